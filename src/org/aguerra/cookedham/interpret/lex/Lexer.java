@@ -1,13 +1,12 @@
 package org.aguerra.cookedham.interpret.lex;
 
-import org.aguerra.cookedham.interpret.error.Error;
-
 import java.io.File;
 import java.util.ArrayList;
 
 public class Lexer {
     private TokenScanner tokenScanner;
     private ArrayList<Token> tokens;
+    private final ArrayList<String> errors = new ArrayList<>();
 
     public Lexer(File file) {
         //TODO: Implement BufferedInputStream
@@ -18,7 +17,7 @@ public class Lexer {
         while (tokenScanner.hasNext()) {
             String token = tokenScanner.nextToken();
 
-            if(!token.equals("")) tokens.add(createToken(token));
+            if(!token.equals("")) addToken(token);
         }
 
         tokens.add(new Token("", Type.EOF, tokenScanner.getLineNum()));
@@ -33,12 +32,22 @@ public class Lexer {
         while (tokenScanner.hasNext()) {
             String token = tokenScanner.nextToken();
 
-            if(!token.equals("")) tokens.add(createToken(token));
+            if(!token.equals("")) addToken(token);
         }
 
         tokens.add(new Token("", Type.EOF, tokenScanner.getLineNum()));
     }
 
+    private void addToken(String token) {
+        Token created = createToken(token);
+
+        if(created == null) {
+            errors.add(format(tokenScanner.getLineNum(), " at '" + token + "'", "Unexpected character."));
+        } else {
+            tokens.add(created);
+        }
+    }
+
     private Token createToken(String token) {
         //Keywords and Special Characters
         switch (token) {
@@ -89,6 +98,13 @@ public class Lexer {
             case "boolean" : return new Token(token, Type.BOOLEAN, tokenScanner.getLineNum());
             case "array" : return new Token(token, Type.ARRAY, tokenScanner.getLineNum());
             case "void" : return new Token(token, Type.VOID, tokenScanner.getLineNum());
+            case "atomic" : return new Token(token, Type.ATOMIC, tokenScanner.getLineNum());
+            case "future" : return new Token(token, Type.FUTURE, tokenScanner.getLineNum());
+            case "chan" : return new Token(token, Type.CHAN, tokenScanner.getLineNum());
+            case "file" : return new Token(token, Type.FILE, tokenScanner.getLineNum());
+            case "object" : return new Token(token, Type.OBJECT, tokenScanner.getLineNum());
+            case "builder" : return new Token(token, Type.BUILDER, tokenScanner.getLineNum());
+            case "pattern" : return new Token(token, Type.PATTERN, tokenScanner.getLineNum());
 
             case "print" : return new Token(token, Type.PRINT, tokenScanner.getLineNum());
             case "break" : return new Token(token, Type.BREAK, tokenScanner.getLineNum());
@@ -105,6 +121,13 @@ public class Lexer {
             case "false" : return new Token(token, Type.FALSE, tokenScanner.getLineNum());
             case "true" : return new Token(token, Type.TRUE, tokenScanner.getLineNum());
             case "len" : return new Token(token, Type.LEN, tokenScanner.getLineNum());
+            case "parallel" : return new Token(token, Type.PARALLEL, tokenScanner.getLineNum());
+            case "spawn" : return new Token(token, Type.SPAWN, tokenScanner.getLineNum());
+            case "await" : return new Token(token, Type.AWAIT, tokenScanner.getLineNum());
+            case "yield" : return new Token(token, Type.YIELD, tokenScanner.getLineNum());
+            case "import" : return new Token(token, Type.IMPORT, tokenScanner.getLineNum());
+            case "as" : return new Token(token, Type.AS, tokenScanner.getLineNum());
+            case "offheap" : return new Token(token, Type.OFFHEAP, tokenScanner.getLineNum());
 
             case "" : return null;
         }
@@ -116,8 +139,6 @@ public class Lexer {
         else if(isString(token)) return new Token(token.substring(1,token.length()-1), Type.STRING_LITERAL, tokenScanner.getLineNum());
         else if(isIdentifier(token)) return new Token(token, Type.IDENTIFIER, tokenScanner.getLineNum());
 
-        new Error("Unexpected Character").invoke();
-
         return null;
     }
 
@@ -196,15 +217,26 @@ public class Lexer {
         return tokens;
     }
 
+    public ArrayList<String> getErrors() {
+        return errors;
+    }
+
     public static void error(Token token, String msg) {
+        System.err.println(message(token, msg));
+    }
+
+    public static String message(Token token, String msg) {
         if(token.getType() == Type.EOF) {
-            report(token.getLineNum(), " at end", msg);
-        } else {
-            report(token.getLineNum(), " at '" + token.getToken() + "'", msg);
+            return format(token.getLineNum(), " at end", msg);
         }
+        return format(token.getLineNum(), " at '" + token.getToken() + "'", msg);
     }
 
     public static void report(int lineNum, String where, String msg) {
-        System.err.println("[Line " + lineNum + "] Error" + where + ": " + msg);
+        System.err.println(format(lineNum, where, msg));
+    }
+
+    private static String format(int lineNum, String where, String msg) {
+        return "[Line " + lineNum + "] Error" + where + ": " + msg;
     }
 }
\ No newline at end of file
@@ -16,11 +16,11 @@ public enum Type {
     INT_LITERAL, DECIMAL_LITERAL, CHAR_LITERAL, STRING_LITERAL,
 
     // Data Types and Identifier
-    INT, DECIMAL, CHAR, STRING, BOOLEAN, IDENTIFIER, ARRAY, VOID,
+    INT, DECIMAL, CHAR, STRING, BOOLEAN, IDENTIFIER, ARRAY, VOID, ATOMIC, FUTURE, CHAN, FILE, OBJECT, BUILDER, PATTERN,
 
     // Keywords
     BREAK, CLASS, CONST, ELSE, FALSE, FOR, IF, NULL, RETURN, SUPER,
-    THIS, TRUE, WHILE, PRINT, LEN,
+    THIS, TRUE, WHILE, PRINT, LEN, PARALLEL, SPAWN, AWAIT, YIELD, IMPORT, AS, OFFHEAP,
 
     EOF,
 }
\ No newline at end of file
@@ -0,0 +1,570 @@
+package org.aguerra.cookedham.interpret.parse;
+
+import org.aguerra.cookedham.interpret.lex.Token;
+import org.aguerra.cookedham.interpret.lex.Type;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Binary form of parsed statements, so a script that has not changed can be loaded without lexing
+//and parsing it again. Every node is a tag byte followed by its fields in constructor order, with
+//tag 0 standing for null. Strings (token text and type names) are pooled: the first use writes the
+//string and later uses only write its index. Bump VERSION whenever a node or its fields change.
+public final class AstSerializer implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private static final int MAGIC = 0x43484153;
+    private static final int VERSION = 3;
+
+    private static final byte NULL = 0;
+
+    private static final byte BLOCK = 1;
+    private static final byte LINE_EXPRESSION = 2;
+    private static final byte IF = 3;
+    private static final byte FUNCTION = 4;
+    private static final byte PRINT = 5;
+    private static final byte RETURN = 6;
+    private static final byte YIELD = 7;
+    private static final byte VARIABLE_STATEMENT = 8;
+    private static final byte FOR = 9;
+    private static final byte FOR_EACH = 10;
+    private static final byte WHILE = 11;
+    private static final byte IMPORT = 12;
+
+    private static final byte ASSIGN = 1;
+    private static final byte ARRAY_ACCESS = 2;
+    private static final byte ARRAY_BLOCK = 3;
+    private static final byte AWAIT = 4;
+    private static final byte BINARY = 5;
+    private static final byte BREAK = 6;
+    private static final byte CALL = 7;
+    private static final byte GROUPING = 8;
+    private static final byte LEN = 9;
+    private static final byte LITERAL = 10;
+    private static final byte LOGICAL = 11;
+    private static final byte SPAWN = 12;
+    private static final byte TERNARY = 13;
+    private static final byte UNARY = 14;
+    private static final byte VARIABLE = 15;
+    private static final byte GET = 16;
+
+    private static final byte BOOLEAN_VALUE = 1;
+    private static final byte INT_VALUE = 2;
+    private static final byte DECIMAL_VALUE = 3;
+    private static final byte STRING_VALUE = 4;
+    private static final byte CHAR_VALUE = 5;
+
+    private final DataOutput out;
+    private final DataInput in;
+    private final Map<String, Integer> written = new HashMap<>();
+    private final List<String> read = new ArrayList<>();
+
+    private AstSerializer(DataOutput out, DataInput in) {
+        this.out = out;
+        this.in = in;
+    }
+
+    public static void write(List<Statement> statements, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        AstSerializer serializer = new AstSerializer(out, null);
+        try {
+            serializer.writeStatements(statements);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    //Throws IOException when the data was written by a different version of the serializer
+    public static List<Statement> read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a serialized program.");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported serialized program version " + version + ".");
+
+        return new AstSerializer(null, in).readStatements();
+    }
+
+    //Writing
+
+    private void writeStatement(Statement statement) {
+        if (statement == null) {
+            writeByte(NULL);
+        } else {
+            statement.accept(this);
+        }
+    }
+
+    private void writeExpression(Expression expression) {
+        if (expression == null) {
+            writeByte(NULL);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    private void writeStatements(List<Statement> statements) {
+        writeInt(statements.size());
+        for (Statement statement : statements) {
+            writeStatement(statement);
+        }
+    }
+
+    private void writeExpressions(List<Expression> expressions) {
+        writeInt(expressions.size());
+        for (Expression expression : expressions) {
+            writeExpression(expression);
+        }
+    }
+
+    private void writeToken(Token token) {
+        if (token == null) {
+            writeString(null);
+            return;
+        }
+
+        writeString(token.getToken());
+        writeType(token.getType());
+        writeInt(token.getLineNum());
+    }
+
+    //Types are written by name so adding keywords does not break programs serialized earlier
+    private void writeType(Type type) {
+        writeString(type == null ? null : type.name());
+    }
+
+    private void writeValue(Object value) {
+        try {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN_VALUE);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT_VALUE);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DECIMAL_VALUE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Character) {
+                out.writeByte(CHAR_VALUE);
+                out.writeChar((Character) value);
+            } else if (value instanceof String) {
+                out.writeByte(STRING_VALUE);
+                writeString((String) value);
+            } else {
+                throw new IllegalArgumentException("Cannot serialize literal " + value + ".");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeString(String string) {
+        try {
+            if (string == null) {
+                out.writeInt(-1);
+                return;
+            }
+
+            Integer index = written.get(string);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+
+            written.put(string, written.size());
+            out.writeInt(written.size() - 1);
+            out.writeUTF(string);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeByte(int value) {
+        try {
+            out.writeByte(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBoolean(boolean value) {
+        try {
+            out.writeBoolean(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.Block statement) {
+        writeByte(BLOCK);
+        writeStatements(statement.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitLineExpressionStatement(Statement.LineExpression statement) {
+        writeByte(LINE_EXPRESSION);
+        writeExpression(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.If statement) {
+        writeByte(IF);
+        writeExpression(statement.condition);
+        writeStatement(statement.thenBranch);
+        writeStatement(statement.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStatement(Statement.Import statement) {
+        writeByte(IMPORT);
+        writeToken(statement.keyword);
+        writeToken(statement.path);
+        writeToken(statement.name);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStatement(Statement.Function statement) {
+        writeByte(FUNCTION);
+        writeToken(statement.name);
+        writeInt(statement.params.size());
+        for (int i = 0; i < statement.params.size(); i++) {
+            writeToken(statement.params.get(i));
+            writeType(statement.paramTypes.get(i));
+        }
+        writeStatements(statement.body);
+        writeType(statement.returnType);
+        writeBoolean(statement.generator);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStatement(Statement.Print statement) {
+        writeByte(PRINT);
+        writeExpression(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.Return statement) {
+        writeByte(RETURN);
+        writeToken(statement.keyword);
+        writeExpression(statement.value);
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStatement(Statement.Yield statement) {
+        writeByte(YIELD);
+        writeToken(statement.keyword);
+        writeExpression(statement.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableStatement(Statement.Variable statement) {
+        writeByte(VARIABLE_STATEMENT);
+        writeToken(statement.name);
+        writeType(statement.type);
+        writeType(statement.arrayType);
+        writeExpression(statement.init);
+        writeBoolean(statement.offheap);
+        return null;
+    }
+
+    @Override
+    public Void visitForStatement(Statement.For statement) {
+        writeByte(FOR);
+        writeStatement(statement.initializer);
+        writeExpression(statement.condition);
+        writeExpression(statement.increment);
+        writeStatement(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitForEachStatement(Statement.ForEach statement) {
+        writeByte(FOR_EACH);
+        writeStatement(statement.definition);
+        writeExpression(statement.array);
+        writeStatement(statement.body);
+        writeBoolean(statement.parallel);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(Statement.While statement) {
+        writeByte(WHILE);
+        writeExpression(statement.condition);
+        writeStatement(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpression(Expression.Assign expression) {
+        writeByte(ASSIGN);
+        writeToken(expression.name);
+        writeExpression(expression.value);
+        writeExpression(expression.arrayIndex);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayAccessExpression(Expression.ArrayAccess expression) {
+        writeByte(ARRAY_ACCESS);
+        writeToken(expression.identifier);
+        writeExpression(expression.index);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayBlockExpression(Expression.ArrayBlock expression) {
+        writeByte(ARRAY_BLOCK);
+        writeExpressions(expression.elements);
+        return null;
+    }
+
+    @Override
+    public Void visitAwaitExpression(Expression.Await expression) {
+        writeByte(AWAIT);
+        writeToken(expression.keyword);
+        writeExpression(expression.task);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpression(Expression.Binary expression) {
+        writeByte(BINARY);
+        writeExpression(expression.left);
+        writeToken(expression.operator);
+        writeExpression(expression.right);
+        return null;
+    }
+
+    //The parser never links a break to its loop, and writing the loop here would recurse into it
+    @Override
+    public Void visitBreakExpression(Expression.Break expression) {
+        writeByte(BREAK);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpression(Expression.Call expression) {
+        writeByte(CALL);
+        writeExpression(expression.calle);
+        writeToken(expression.paren);
+        writeExpressions(expression.arguments);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpression(Expression.Get expression) {
+        writeByte(GET);
+        writeExpression(expression.object);
+        writeToken(expression.name);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpression(Expression.Grouping expression) {
+        writeByte(GROUPING);
+        writeExpression(expression.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLenExpression(Expression.Len expression) {
+        writeByte(LEN);
+        writeExpression(expression.expression);
+        writeToken(expression.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpression(Expression.Literal expression) {
+        writeByte(LITERAL);
+        writeValue(expression.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpression(Expression.Logical expression) {
+        writeByte(LOGICAL);
+        writeExpression(expression.left);
+        writeToken(expression.operator);
+        writeExpression(expression.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnExpression(Expression.Spawn expression) {
+        writeByte(SPAWN);
+        writeToken(expression.keyword);
+        writeExpression(expression.call);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpression(Expression.Ternary expression) {
+        writeByte(TERNARY);
+        writeExpression(expression.condition);
+        writeExpression(expression.truthExpression);
+        writeExpression(expression.falseExpression);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpression(Expression.Unary expression) {
+        writeByte(UNARY);
+        writeToken(expression.operator);
+        writeExpression(expression.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpression(Expression.Variable expression) {
+        writeByte(VARIABLE);
+        writeToken(expression.name);
+        return null;
+    }
+
+    //Reading
+
+    private Statement readStatement() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL               : return null;
+            case BLOCK              : return new Statement.Block(readStatements());
+            case LINE_EXPRESSION    : return new Statement.LineExpression(readExpression());
+            case IF                 : return new Statement.If(readExpression(), readStatement(), readStatement());
+            case FUNCTION           : return readFunction();
+            case PRINT              : return new Statement.Print(readExpression());
+            case RETURN             : return new Statement.Return(readToken(), readExpression());
+            case YIELD              : return new Statement.Yield(readToken(), readExpression());
+            case VARIABLE_STATEMENT : return new Statement.Variable(readToken(), readType(), readType(), readExpression(), in.readBoolean());
+            case FOR                : return new Statement.For(readStatement(), readExpression(), readExpression(), readStatement());
+            case FOR_EACH           : return new Statement.ForEach(readStatement(), readExpression(), readStatement(), in.readBoolean());
+            case WHILE              : return new Statement.While(readExpression(), readStatement());
+            case IMPORT             : return new Statement.Import(readToken(), readToken(), readToken());
+        }
+
+        throw new IOException("Unknown statement tag " + tag + ".");
+    }
+
+    private Statement.Function readFunction() throws IOException {
+        Token name = readToken();
+        int count = in.readInt();
+        List<Token> params = new ArrayList<>(count);
+        List<Type> paramTypes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            params.add(readToken());
+            paramTypes.add(readType());
+        }
+
+        return new Statement.Function(name, params, paramTypes, readStatements(), readType(), in.readBoolean());
+    }
+
+    private Expression readExpression() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL         : return null;
+            case ASSIGN       : return new Expression.Assign(readToken(), readExpression(), readExpression());
+            case ARRAY_ACCESS : return new Expression.ArrayAccess(readToken(), readExpression());
+            case ARRAY_BLOCK  : return new Expression.ArrayBlock(readExpressions());
+            case AWAIT        : return new Expression.Await(readToken(), readExpression());
+            case BINARY       : return new Expression.Binary(readExpression(), readToken(), readExpression());
+            case BREAK        : return new Expression.Break(null);
+            case CALL         : return new Expression.Call(readExpression(), readToken(), readExpressions());
+            case GROUPING     : return new Expression.Grouping(readExpression());
+            case LEN          : return new Expression.Len(readExpression(), readToken());
+            case LITERAL      : return new Expression.Literal(readValue());
+            case LOGICAL      : return new Expression.Logical(readExpression(), readToken(), readExpression());
+            case SPAWN        : return new Expression.Spawn(readToken(), (Expression.Call) readExpression());
+            case TERNARY      : return new Expression.Ternary(readExpression(), readExpression(), readExpression());
+            case UNARY        : return new Expression.Unary(readToken(), readExpression());
+            case VARIABLE     : return new Expression.Variable(readToken());
+            case GET          : return new Expression.Get(readExpression(), readToken());
+        }
+
+        throw new IOException("Unknown expression tag " + tag + ".");
+    }
+
+    private List<Statement> readStatements() throws IOException {
+        int count = in.readInt();
+        List<Statement> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(readStatement());
+        }
+        return statements;
+    }
+
+    private List<Expression> readExpressions() throws IOException {
+        int count = in.readInt();
+        List<Expression> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    private Token readToken() throws IOException {
+        String text = readString();
+        if (text == null) return null;
+
+        return new Token(text, readType(), in.readInt());
+    }
+
+    private Type readType() throws IOException {
+        String name = readString();
+        if (name == null) return null;
+
+        try {
+            return Type.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown type " + name + ".");
+        }
+    }
+
+    private Object readValue() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL          : return null;
+            case BOOLEAN_VALUE : return in.readBoolean();
+            case INT_VALUE     : return in.readInt();
+            case DECIMAL_VALUE : return in.readDouble();
+            case CHAR_VALUE    : return in.readChar();
+            case STRING_VALUE  : return readString();
+        }
+
+        throw new IOException("Unknown literal tag " + tag + ".");
+    }
+
+    private String readString() throws IOException {
+        int index = in.readInt();
+        if (index == -1) return null;
+        if (index < read.size()) return read.get(index);
+        if (index != read.size()) throw new IOException("Corrupt string pool.");
+
+        String string = in.readUTF();
+        read.add(string);
+        return string;
+    }
+}
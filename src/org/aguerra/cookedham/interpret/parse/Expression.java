@@ -9,13 +9,16 @@ public abstract class Expression {
         public R visitAssignExpression(Assign expression);
         public R visitArrayAccessExpression(ArrayAccess expression);
         public R visitArrayBlockExpression(ArrayBlock expression);
+        public R visitAwaitExpression(Await expression);
         public R visitBinaryExpression(Binary expression);
         public R visitBreakExpression(Break expression);
         public R visitCallExpression(Call expression);
+        public R visitGetExpression(Get expression);
         public R visitGroupingExpression(Grouping expression);
         public R visitLenExpression(Len expression);
         public R visitLiteralExpression(Literal expression);
         public R visitLogicalExpression(Logical expression);
+        public R visitSpawnExpression(Spawn expression);
         public R visitTernaryExpression(Ternary expression);
         public R visitUnaryExpression(Unary expression);
         public R visitVariableExpression(Variable expression);
@@ -61,6 +64,19 @@ public abstract class Expression {
 
         public final List<Expression> elements;
     }
+    public static class Await extends Expression {
+        public Await(Token keyword, Expression task) {
+            this.keyword = keyword;
+            this.task = task;
+        }
+
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitAwaitExpression(this);
+        }
+
+        public final Token keyword;
+        public final Expression task;
+    }
     public static class Binary extends Expression {
         public Binary(Expression left, Token operator, Expression right) {
             this.left = left;
@@ -102,6 +118,19 @@ public abstract class Expression {
         public final Token paren;
         public final List<Expression> arguments;
     }
+    public static class Get extends Expression {
+        public Get(Expression object, Token name) {
+            this.object = object;
+            this.name = name;
+        }
+
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitGetExpression(this);
+        }
+
+        public final Expression object;
+        public final Token name;
+    }
     public static class Grouping extends Expression {
         public Grouping(Expression expression) {
             this.expression = expression;
@@ -152,6 +181,19 @@ public abstract class Expression {
         public final Token operator;
         public final Expression right;
     }
+    public static class Spawn extends Expression {
+        public Spawn(Token keyword, Call call) {
+            this.keyword = keyword;
+            this.call = call;
+        }
+
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSpawnExpression(this);
+        }
+
+        public final Token keyword;
+        public final Call call;
+    }
     public static class Ternary extends Expression {
         public Ternary(Expression condition, Expression truthExpression, Expression falseExpression) {
             this.condition = condition;
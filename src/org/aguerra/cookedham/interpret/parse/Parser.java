@@ -4,6 +4,7 @@ import org.aguerra.cookedham.interpret.lex.Lexer;
 import org.aguerra.cookedham.interpret.lex.Token;
 import org.aguerra.cookedham.interpret.lex.Type;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,7 +13,10 @@ public class Parser {
     private static class ParseError extends RuntimeException {}
 
     private List<Token> tokens;
+    private final List<String> errors = new ArrayList<>();
     private int currToken;
+    private int functionDepth = 0;
+    private boolean sawYield = false;
 
     public Parser(List<Token> tokens) {
         this.tokens = tokens;
@@ -33,12 +37,16 @@ public class Parser {
 
     private Statement declaration() {
         try {
-            if (match(Type.INT, Type.DECIMAL, Type.STRING, Type.CHAR, Type.BOOLEAN, Type.ARRAY)) {
+            if (match(Type.INT, Type.DECIMAL, Type.STRING, Type.CHAR, Type.BOOLEAN, Type.ARRAY, Type.ATOMIC, Type.FUTURE, Type.CHAN, Type.FILE, Type.OBJECT, Type.BUILDER, Type.PATTERN)) {
                 if(peek(1).getType() != Type.LEFT_PAREN) {
                     return varDeclaration(getVariableType());
                 }
                 return function("function", previous().getType());
             }
+            if (match(Type.OFFHEAP)) {
+                consume("Expect 'array' after 'offheap'.", Type.ARRAY);
+                return varDeclaration(Type.ARRAY, true);
+            }
 
             return statement();
         } catch (ParseError error) {
@@ -49,16 +57,59 @@ public class Parser {
 
     private Statement statement() {
         if (match(Type.INT, Type.DECIMAL, Type.STRING, Type.CHAR, Type.BOOLEAN, Type.VOID)) return function("function", previous().getType());
-        if (match(Type.FOR)) return forStatement();
+        if (match(Type.FOR)) return forStatement(false);
+        if (match(Type.PARALLEL)) return parallelForStatement();
         if(match(Type.IF)) return ifStatement();
         if (match(Type.PRINT)) return printStatement();
         if (match(Type.RETURN)) return returnStatement();
+        if (match(Type.YIELD)) return yieldStatement();
+        if (match(Type.IMPORT)) return importStatement();
         if (match(Type.WHILE)) return whileStatement();
         if(match(Type.LEFT_BRACE)) return new Statement.Block(block());
         return expressionStatement();
     }
 
-    private Statement forStatement() {
+    //import "path" [as name] ; without a name the module is named after its file
+    private Statement importStatement() {
+        Token keyword = previous();
+        Token path = consume("Expect module path after 'import'.", Type.STRING_LITERAL);
+
+        Token name;
+        if (match(Type.AS)) {
+            name = consume("Expect module name after 'as'.", Type.IDENTIFIER);
+        } else {
+            String file = new File(path.getToken()).getName();
+            int extension = file.lastIndexOf('.');
+            name = new Token(extension > 0 ? file.substring(0, extension) : file, Type.IDENTIFIER, path.getLineNum());
+
+            //The file name has to lex as a single identifier, so keywords and numbers need 'as'
+            List<Token> tokens = new Lexer(name.getToken()).getTokens();
+            if (tokens.size() != 2 || tokens.get(0).getType() != Type.IDENTIFIER) {
+                throw error(path, "Module name '" + name.getToken() + "' is not an identifier, name it with 'as'.");
+            }
+        }
+
+        consume("Expect ';' after import.", Type.SEMICOLON);
+        return new Statement.Import(keyword, path, name);
+    }
+
+    private Statement parallelForStatement() {
+        Token keyword = previous();
+        consume("Expect 'for' after 'parallel'.", Type.FOR);
+        Statement loop = forStatement(true);
+
+        if (!(loop instanceof Statement.ForEach)) throw error(keyword, "Only for-each loops can be parallel.");
+
+        //Iterations run concurrently, so they may only share state through atomic built-ins
+        Statement.ForEach forEach = (Statement.ForEach) loop;
+        for (Token write : SideEffects.of(forEach.body, (Statement.Variable) forEach.definition).getOuterWrites()) {
+            error(write, "Cannot assign to outer variable or shared array in a parallel loop, use an atomic instead.");
+        }
+
+        return loop;
+    }
+
+    private Statement forStatement(boolean parallel) {
         Expression array = null;
         Statement initializer = null;
         Expression condition = null;
@@ -68,7 +119,7 @@ public class Parser {
 
         if (match(Type.SEMICOLON)) {
             initializer = null;
-        } else if (match(Type.INT, Type.DECIMAL, Type.CHAR, Type.STRING, Type.BOOLEAN)) {
+        } else if (match(Type.INT, Type.DECIMAL, Type.CHAR, Type.STRING, Type.BOOLEAN, Type.ARRAY)) {
             initializer = varDeclaration(previous().getType());
         } else {
             initializer = expressionStatement();
@@ -94,7 +145,7 @@ public class Parser {
         //consume("Expect '{' after ')'.", Type.LEFT_BRACE);
         Statement body = statement();
 
-        return array == null ? new Statement.For(initializer, condition, increment, body) : new Statement.ForEach(initializer, array, body);
+        return array == null ? new Statement.For(initializer, condition, increment, body) : new Statement.ForEach(initializer, array, body, parallel);
     }
 
     private Statement ifStatement() {
@@ -129,13 +180,36 @@ public class Parser {
         return new Statement.Return(keyword, value);
     }
 
+    private Statement yieldStatement() {
+        Token keyword = previous();
+        if (functionDepth == 0) error(keyword, "Cannot yield outside of a function.");
+        sawYield = true;
+
+        Expression value = null;
+        if (!check(Type.SEMICOLON)) {
+            value = expression();
+        }
+
+        consume("Expect ';' after yield value.", Type.SEMICOLON);
+        return new Statement.Yield(keyword, value);
+    }
+
     private Statement varDeclaration(Type expectedType) {
+        return varDeclaration(expectedType, false);
+    }
+
+    private Statement varDeclaration(Type expectedType, boolean offheap) {
         Type arrayType = null;
 
-        if(expectedType == Type.ARRAY) {
-            consume("Expect '<' after array type in array declaration.", Type.LEFT_ANGLE_BRACE);
-            arrayType = getVariableType(consume("Expect type after array declaration.", Type.INT, Type.DECIMAL, Type.CHAR, Type.STRING, Type.ARRAY));
-            consume("Expected '>' after type in array declaration.", Type.RIGHT_ANGLE_BRACE);
+        if(expectedType == Type.ARRAY || expectedType == Type.CHAN) {
+            String kind = expectedType == Type.ARRAY ? "array" : "chan";
+            consume("Expect '<' after " + kind + " type in " + kind + " declaration.", Type.LEFT_ANGLE_BRACE);
+            arrayType = getVariableType(consume("Expect type after " + kind + " declaration.", Type.INT, Type.DECIMAL, Type.CHAR, Type.STRING, Type.ARRAY, Type.OBJECT));
+            consume("Expected '>' after type in " + kind + " declaration.", Type.RIGHT_ANGLE_BRACE);
+        }
+
+        if(offheap && arrayType != Type.INT && arrayType != Type.DECIMAL) {
+            error(previous(), "Off-heap arrays can only hold int or decimal.");
         }
 
         Token name = consume("Expect variable name.", Type.IDENTIFIER);
@@ -149,7 +223,7 @@ public class Parser {
             consume("Expect ';' after variable declaration.", Type.SEMICOLON);
         }
 
-        return new Statement.Variable(name, expectedType, arrayType, initializer);
+        return new Statement.Variable(name, expectedType, arrayType, initializer, offheap);
     }
 
     private Statement function(String kind, Type expectedType) {
@@ -165,15 +239,28 @@ public class Parser {
                     error(peek(), "Cannot have more than 255 parameters.");
                 }
 
-                parametersTypes.add(getVariableType(consume("Expect type.", Type.INT, Type.DECIMAL, Type.CHAR, Type.STRING, Type.ARRAY)));
+                parametersTypes.add(getVariableType(consume("Expect type.", Type.INT, Type.DECIMAL, Type.CHAR, Type.STRING, Type.ARRAY, Type.ATOMIC, Type.FUTURE, Type.CHAN, Type.FILE, Type.OBJECT, Type.BUILDER, Type.PATTERN)));
                 parameters.add(consume("Expect parameter name.", Type.IDENTIFIER));
             } while (match(Type.COMMA));
         }
         consume("Expect ')' after parameters.", Type.RIGHT_PAREN);
 
         consume("Expect '{' before " + kind + " body.", Type.LEFT_BRACE);
-        List<Statement> body = block();
-        return new Statement.Function(name, parameters, parametersTypes, body, expectedType);
+
+        //A function whose own body yields is a generator
+        boolean enclosingYield = sawYield;
+        sawYield = false;
+        functionDepth++;
+        List<Statement> body;
+        try {
+            body = block();
+        } finally {
+            functionDepth--;
+        }
+        boolean generator = sawYield;
+        sawYield = enclosingYield;
+
+        return new Statement.Function(name, parameters, parametersTypes, body, expectedType, generator);
     }
 
     private Statement whileStatement() {
@@ -357,6 +444,20 @@ public class Parser {
             return new Expression.Unary(op, right);
         }
 
+        if(match(Type.SPAWN)) {
+            Token keyword = previous();
+            Expression call = call();
+
+            if(!(call instanceof Expression.Call)) throw error(keyword, "Expect function call after 'spawn'.");
+            return new Expression.Spawn(keyword, (Expression.Call)call);
+        }
+
+        if(match(Type.AWAIT)) {
+            Token keyword = previous();
+            Expression task = unary();
+            return new Expression.Await(keyword, task);
+        }
+
         return call();
     }
 
@@ -382,6 +483,9 @@ public class Parser {
         while (true) {
             if (match(Type.LEFT_PAREN)) {
                 expression = finishCall(expression);
+            } else if (match(Type.DOT)) {
+                Token name = consume("Expect member name after '.'.", Type.IDENTIFIER);
+                expression = new Expression.Get(expression, name);
             } else {
                 break;
             }
@@ -454,6 +558,13 @@ public class Parser {
             case "string"  : return Type.STRING;
             case "boolean" : return Type.BOOLEAN;
             case "array" : return Type.ARRAY;
+            case "atomic" : return Type.ATOMIC;
+            case "future" : return Type.FUTURE;
+            case "chan" : return Type.CHAN;
+            case "file" : return Type.FILE;
+            case "object" : return Type.OBJECT;
+            case "builder" : return Type.BUILDER;
+            case "pattern" : return Type.PATTERN;
             default        : return Type.NULL; //Replace with class object
 
         }
@@ -467,8 +578,12 @@ public class Parser {
         throw error(peek(), msg);
     }
 
+    public List<String> getErrors() {
+        return errors;
+    }
+
     private ParseError error(Token token, String msg) {
-        Lexer.error(token, msg);
+        errors.add(Lexer.message(token, msg));
         return new ParseError();
     }
 
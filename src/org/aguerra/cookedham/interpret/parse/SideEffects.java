@@ -0,0 +1,391 @@
+package org.aguerra.cookedham.interpret.parse;
+
+import org.aguerra.cookedham.interpret.lex.Token;
+import org.aguerra.cookedham.interpret.lex.Type;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//Records what a function or loop body can do outside of itself: assignments to variables it did not
+//declare, printing and the names of the functions it calls. Anything the walk cannot see through
+//(calls through expressions, nested function declarations) marks the body as unresolved.
+//
+//Arrays are shared by reference and + appends to its left array in place, so writing an element of an
+//array or appending to it also counts as an outer write unless the body made that array itself. Where
+//that depends on what a global holds, the names are left for Purity to look up.
+public class SideEffects implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private static final Set<Type> SCALARS = EnumSet.of(Type.INT, Type.DECIMAL, Type.CHAR, Type.STRING, Type.BOOLEAN);
+
+    private final Deque<Map<String, Local>> scopes = new ArrayDeque<>();
+    private final List<Token> outerWrites = new ArrayList<>();
+    //Writes into local arrays, outer writes once the walk knows whether the array was made here
+    private final List<Token> arrayWrites = new ArrayList<>();
+    private final List<Local> arrayWritten = new ArrayList<>();
+    private final Set<String> callees = new LinkedHashSet<>();
+    private final Set<String> appendedNames = new LinkedHashSet<>();
+    private final Set<String> appendedElements = new LinkedHashSet<>();
+    private boolean performsOutput = false;
+    private boolean unresolved = false;
+
+    //A variable declared by the body. Its array is made here when it is declared empty or as a literal
+    //and is never reassigned to an array from elsewhere.
+    private static final class Local {
+        final boolean array;
+        final Type elementType;
+        boolean made;
+
+        Local(Type type, Type elementType, boolean made) {
+            this.array = type == Type.ARRAY;
+            this.elementType = elementType;
+            this.made = made;
+        }
+    }
+
+    private SideEffects() {
+        scopes.push(new HashMap<>());
+    }
+
+    public static SideEffects of(Statement.Function function) {
+        SideEffects sideEffects = new SideEffects();
+        for (int i = 0; i < function.params.size(); i++) {
+            sideEffects.declare(function.params.get(i), new Local(function.paramTypes.get(i), null, false));
+        }
+        for (Statement statement : function.body) {
+            sideEffects.visit(statement);
+        }
+        return sideEffects.finish();
+    }
+
+    //Body of a for-each loop, whose variable holds elements of an array made elsewhere
+    public static SideEffects of(Statement body, Statement.Variable loopVariable) {
+        SideEffects sideEffects = new SideEffects();
+        sideEffects.declare(loopVariable.name, new Local(loopVariable.type, loopVariable.arrayType, false));
+        sideEffects.visit(body);
+        return sideEffects.finish();
+    }
+
+    private SideEffects finish() {
+        for (int i = 0; i < arrayWrites.size(); i++) {
+            if (!arrayWritten.get(i).made) outerWrites.add(arrayWrites.get(i));
+        }
+        return this;
+    }
+
+    public boolean writesOuter() {
+        return !outerWrites.isEmpty();
+    }
+
+    public List<Token> getOuterWrites() {
+        return outerWrites;
+    }
+
+    public boolean performsOutput() {
+        return performsOutput;
+    }
+
+    public boolean isUnresolved() {
+        return unresolved;
+    }
+
+    public Set<String> getCallees() {
+        return callees;
+    }
+
+    //Variables the body does not declare that it appends to with +, and functions whose results it
+    //appends to. Appending to a global array is an outer write.
+    public Set<String> getAppendedNames() {
+        return appendedNames;
+    }
+
+    //Arrays the body does not declare whose elements it appends to with +
+    public Set<String> getAppendedElements() {
+        return appendedElements;
+    }
+
+    private void visit(Statement statement) {
+        if (statement != null) statement.accept(this);
+    }
+
+    private void visit(Expression expression) {
+        if (expression != null) expression.accept(this);
+    }
+
+    private void declare(Token name, Local local) {
+        scopes.peek().put(name.getToken(), local);
+    }
+
+    //Names that are not arrays, such as functions and imported modules
+    private void declare(Token name) {
+        declare(name, new Local(null, null, true));
+    }
+
+    private Local local(Token name) {
+        for (Map<String, Local> scope : scopes) {
+            Local local = scope.get(name.getToken());
+            if (local != null) return local;
+        }
+        return null;
+    }
+
+    private boolean isLocal(Token name) {
+        return local(name) != null;
+    }
+
+    private void writeArray(Token name, Local local) {
+        arrayWrites.add(name);
+        arrayWritten.add(local);
+    }
+
+    //An array literal, or an array the body made, which + appends to and returns
+    private boolean isMade(Expression value) {
+        if (value == null || value instanceof Expression.ArrayBlock) return true;
+        if (value instanceof Expression.Grouping) return isMade(((Expression.Grouping) value).expression);
+        if (value instanceof Expression.Binary && ((Expression.Binary) value).operator.getType() == Type.PLUS) {
+            return isMade(((Expression.Binary) value).left);
+        }
+        if (value instanceof Expression.Variable) {
+            Local local = local(((Expression.Variable) value).name);
+            return local != null && local.made;
+        }
+        return false;
+    }
+
+    //What the left side of a + may append to
+    private void appendTo(Expression target, Token operator) {
+        if (target instanceof Expression.Grouping) {
+            appendTo(((Expression.Grouping) target).expression, operator);
+        } else if (target instanceof Expression.Ternary) {
+            appendTo(((Expression.Ternary) target).truthExpression, operator);
+            appendTo(((Expression.Ternary) target).falseExpression, operator);
+        } else if (target instanceof Expression.Variable) {
+            Token name = ((Expression.Variable) target).name;
+            Local local = local(name);
+            if (local == null) appendedNames.add(name.getToken());
+            else if (local.array) writeArray(name, local);
+        } else if (target instanceof Expression.ArrayAccess) {
+            Token name = ((Expression.ArrayAccess) target).identifier;
+            Local local = local(name);
+            if (local == null) appendedElements.add(name.getToken());
+            else if (local.array && !SCALARS.contains(local.elementType)) outerWrites.add(name);
+        } else if (target instanceof Expression.Call) {
+            Expression callee = ((Expression.Call) target).calle;
+            if (callee instanceof Expression.Variable) appendedNames.add(((Expression.Variable) callee).name.getToken());
+        } else if (target instanceof Expression.Get || target instanceof Expression.Await) {
+            unresolved = true;
+        }
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.Block statement) {
+        scopes.push(new HashMap<>());
+        for (Statement inner : statement.statements) {
+            visit(inner);
+        }
+        scopes.pop();
+        return null;
+    }
+
+    @Override
+    public Void visitLineExpressionStatement(Statement.LineExpression statement) {
+        visit(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.If statement) {
+        visit(statement.condition);
+        visit(statement.thenBranch);
+        visit(statement.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStatement(Statement.Function statement) {
+        declare(statement.name);
+        unresolved = true;
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStatement(Statement.Print statement) {
+        performsOutput = true;
+        visit(statement.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.Return statement) {
+        visit(statement.value);
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStatement(Statement.Yield statement) {
+        visit(statement.value);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStatement(Statement.Import statement) {
+        declare(statement.name);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableStatement(Statement.Variable statement) {
+        visit(statement.init);
+        declare(statement.name, new Local(statement.type, statement.arrayType, isMade(statement.init)));
+        return null;
+    }
+
+    @Override
+    public Void visitForStatement(Statement.For statement) {
+        visit(statement.initializer);
+        visit(statement.condition);
+        visit(statement.increment);
+        visit(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitForEachStatement(Statement.ForEach statement) {
+        Statement.Variable definition = (Statement.Variable) statement.definition;
+        visit(statement.array);
+        declare(definition.name, new Local(definition.type, definition.arrayType, false));
+        visit(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(Statement.While statement) {
+        visit(statement.condition);
+        visit(statement.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpression(Expression.Assign expression) {
+        visit(expression.value);
+        visit(expression.arrayIndex);
+
+        Local local = local(expression.name);
+        if (local == null) {
+            outerWrites.add(expression.name);
+        } else if (expression.arrayIndex != null) {
+            writeArray(expression.name, local);
+        } else if (!isMade(expression.value)) {
+            local.made = false;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitArrayAccessExpression(Expression.ArrayAccess expression) {
+        visit(expression.index);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayBlockExpression(Expression.ArrayBlock expression) {
+        for (Expression element : expression.elements) {
+            visit(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpression(Expression.Binary expression) {
+        if (expression.operator.getType() == Type.PLUS) appendTo(expression.left, expression.operator);
+        visit(expression.left);
+        visit(expression.right);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakExpression(Expression.Break expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpression(Expression.Call expression) {
+        if (expression.calle instanceof Expression.Variable
+                && !isLocal(((Expression.Variable) expression.calle).name)) {
+            callees.add(((Expression.Variable) expression.calle).name.getToken());
+        } else {
+            unresolved = true;
+        }
+
+        for (Expression argument : expression.arguments) {
+            visit(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnExpression(Expression.Spawn expression) {
+        visit(expression.call);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpression(Expression.Get expression) {
+        visit(expression.object);
+        return null;
+    }
+
+    @Override
+    public Void visitAwaitExpression(Expression.Await expression) {
+        visit(expression.task);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpression(Expression.Grouping expression) {
+        visit(expression.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLenExpression(Expression.Len expression) {
+        visit(expression.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpression(Expression.Literal expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpression(Expression.Logical expression) {
+        visit(expression.left);
+        visit(expression.right);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpression(Expression.Ternary expression) {
+        visit(expression.condition);
+        visit(expression.truthExpression);
+        visit(expression.falseExpression);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpression(Expression.Unary expression) {
+        visit(expression.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpression(Expression.Variable expression) {
+        return null;
+    }
+}
@@ -9,9 +9,11 @@ public abstract class Statement {
         public R visitBlockStatement(Block statement);
         public R visitLineExpressionStatement(LineExpression statement);
         public R visitIfStatement(If statement);
+        public R visitImportStatement(Import statement);
         public R visitFunctionStatement(Function statement);
         public R visitPrintStatement(Print statement);
         public R visitReturnStatement(Return statement);
+        public R visitYieldStatement(Yield statement);
         public R visitVariableStatement(Variable statement);
         public R visitForStatement(For statement);
         public R visitForEachStatement(ForEach statement);
@@ -56,13 +58,29 @@ public abstract class Statement {
         public final Statement thenBranch;
         public final Statement elseBranch;
     }
+    public static class Import extends Statement {
+        public Import(Token keyword, Token path, Token name) {
+            this.keyword = keyword;
+            this.path = path;
+            this.name = name;
+        }
+
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitImportStatement(this);
+        }
+
+        public final Token keyword;
+        public final Token path;
+        public final Token name;
+    }
     public static class Function extends Statement {
-        public Function(Token name, List<Token> params, List<Type> paramTypes, List<Statement> body, Type returnType) {
+        public Function(Token name, List<Token> params, List<Type> paramTypes, List<Statement> body, Type returnType, boolean generator) {
             this.name = name;
             this.params = params;
             this.paramTypes = paramTypes;
             this.body = body;
             this.returnType = returnType;
+            this.generator = generator;
         }
 
         public <R> R accept(Visitor<R> visitor) {
@@ -74,6 +92,7 @@ public abstract class Statement {
         public final List<Type> paramTypes;
         public final List<Statement> body;
         public final Type returnType;
+        public final boolean generator;
     }
     public static class Print extends Statement {
         public Print(Expression expression) {
@@ -99,12 +118,26 @@ public abstract class Statement {
         public final Token keyword;
         public final Expression value;
     }
+    public static class Yield extends Statement {
+        public Yield(Token keyword, Expression value) {
+            this.keyword = keyword;
+            this.value = value;
+        }
+
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitYieldStatement(this);
+        }
+
+        public final Token keyword;
+        public final Expression value;
+    }
     public static class Variable extends Statement {
-        public Variable(Token name, Type type, Type arrayType, Expression init) {
+        public Variable(Token name, Type type, Type arrayType, Expression init, boolean offheap) {
             this.name = name;
             this.type = type;
             this.arrayType = arrayType;
             this.init = init;
+            this.offheap = offheap;
         }
 
         public <R> R accept(Visitor<R> visitor) {
@@ -115,6 +148,7 @@ public abstract class Statement {
         public final Type type;
         public final Type arrayType;
         public final Expression init;
+        public final boolean offheap;
     }
     public static class For extends Statement {
         public For(Statement initializer, Expression condition, Expression increment, Statement body) {
@@ -134,10 +168,11 @@ public abstract class Statement {
         public final Statement body;
     }
     public static class ForEach extends Statement {
-        public ForEach(Statement definition, Expression array, Statement body) {
+        public ForEach(Statement definition, Expression array, Statement body, boolean parallel) {
             this.definition = definition;
             this.array = array;
             this.body = body;
+            this.parallel = parallel;
         }
 
         public <R> R accept(Visitor<R> visitor) {
@@ -147,6 +182,7 @@ public abstract class Statement {
         public final Statement definition;
         public final Expression array;
         public final Statement body;
+        public final boolean parallel;
     }
     public static class While extends Statement {
         public While(Expression condition, Statement body) {
@@ -1,9 +1,8 @@
 package org.aguerra.cookedham.interpret.run;
 
-import org.aguerra.cookedham.interpret.lex.Token;
 import org.aguerra.cookedham.interpret.lex.Type;
 
-import java.util.ArrayList;
+import java.util.List;
 
 public class Array extends Variable {
     public Type arrayType;
@@ -17,14 +16,18 @@ public class Array extends Variable {
         this.arrayType = null;
     }
 
+    //Arrays are any List, so file-backed arrays index the same way as ArrayLists. Ranges and
+    //generators can be read by index too.
     public Object getValue(int index) {
-        if(((ArrayList<Object>)getValue()).size() <= index) CookedHam.runtimeError(new RuntimeError(new Token("", Type.NULL, 0), "Token outside array bounds."));
-        return ((ArrayList<Object>)getValue()).get(index);
+        return Sequences.get(getValue(), index);
     }
 
+    @SuppressWarnings("unchecked")
     public void setValue(int index, Object value) {
-        if(((ArrayList<Object>)getValue()).size() <= index) CookedHam.runtimeError(new RuntimeError(new Token("", Type.NULL, 0), "Token outside array bounds."));
-        ((ArrayList<Object>)getValue()).set(index, value);
+        if(!(getValue() instanceof List)) throw new RuntimeError(null, "Cannot assign to an element of " + getValue() + ".");
+        List<Object> array = (List<Object>)getValue();
+        if(index < 0 || array.size() <= index) throw Sequences.outOfBounds();
+        array.set(index, value);
     }
 
     public int getLength() {
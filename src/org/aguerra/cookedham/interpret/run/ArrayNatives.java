@@ -0,0 +1,201 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//map, filter, reduce and fold. Arrays of at least PARALLEL_THRESHOLD elements are split across the common
+//ForkJoinPool when the function is pure, each slice running on its own forked interpreter.
+final class ArrayNatives {
+    static final int PARALLEL_THRESHOLD = 2048;
+    private static final int MIN_GRAIN = 256;
+
+    private ArrayNatives() {}
+
+    static void define(Environment globals) {
+        globals.define("map", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                List<Object> array = array(arguments.get(0), "map");
+                Callable function = function(arguments.get(1), 1, "map");
+                interpreter.chargeArray(array.size(), null);
+                Object[] results = new Object[array.size()];
+
+                forEachIndex(interpreter, function, array.size(),
+                        (worker, index) -> results[index] = function.call(worker, Collections.singletonList(array.get(index))));
+
+                return new ArrayList<>(Arrays.asList(results));
+            }
+        });
+        globals.define("filter", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                List<Object> array = array(arguments.get(0), "filter");
+                Callable function = function(arguments.get(1), 1, "filter");
+                boolean[] keep = new boolean[array.size()];
+
+                forEachIndex(interpreter, function, array.size(),
+                        (worker, index) -> keep[index] = worker.isTruthy(function.call(worker, Collections.singletonList(array.get(index)))));
+
+                ArrayList<Object> results = new ArrayList<>();
+                for (int i = 0; i < keep.length; i++) {
+                    if (keep[i]) results.add(array.get(i));
+                }
+                interpreter.chargeArray(results.size(), null);
+                return results;
+            }
+        });
+        //reduce folds from init in order on the calling interpreter. Its function may change the
+        //accumulator's type, so it is never split across threads.
+        globals.define("reduce", new Native(3, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                List<Object> array = array(arguments.get(0), "reduce");
+                Callable function = function(arguments.get(1), 2, "reduce");
+                Object accumulator = arguments.get(2);
+                for (Object element : array) {
+                    accumulator = function.call(interpreter, Arrays.asList(accumulator, element));
+                }
+                return accumulator;
+            }
+        });
+        //fold(array, fn, identity, combine) is reduce for large arrays. Each chunk is folded with fn
+        //starting from identity and the partial results are joined in order with combine, so the result
+        //matches reduce when identity changes nothing under combine and combine is associative.
+        globals.define("fold", new Native(4, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                List<Object> array = array(arguments.get(0), "fold");
+                Callable function = function(arguments.get(1), 2, "fold");
+                Object identity = arguments.get(2);
+                Callable combine = function(arguments.get(3), 2, "fold");
+
+                if (!runsInParallel(interpreter, function, array.size()) || !Purity.isPure(combine, interpreter.globals)) {
+                    Object accumulator = identity;
+                    for (Object element : array) {
+                        accumulator = function.call(interpreter, Arrays.asList(accumulator, element));
+                    }
+                    return accumulator;
+                }
+
+                int grain = grain(array.size());
+                Object[] partials = new Object[(array.size() + grain - 1) / grain];
+                ForkJoinPool.commonPool().invoke(new Slice(interpreter, 0, partials.length, 1, (worker, chunk) -> {
+                    int to = Math.min((chunk + 1) * grain, array.size());
+                    Object partial = identity;
+                    for (int i = chunk * grain; i < to; i++) {
+                        partial = function.call(worker, Arrays.asList(partial, array.get(i)));
+                    }
+                    partials[chunk] = partial;
+                }));
+
+                Object accumulator = partials[0];
+                for (int i = 1; i < partials.length; i++) {
+                    accumulator = combine.call(interpreter, Arrays.asList(accumulator, partials[i]));
+                }
+                return accumulator;
+            }
+        });
+        globals.define("range", new Native(3) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                for (Object argument : arguments) {
+                    if (!(argument instanceof Integer || argument instanceof Double)) {
+                        throw new RuntimeError(null, "Expected numbers as arguments to range.");
+                    }
+                }
+                return new Range((Number) arguments.get(0), (Number) arguments.get(1), (Number) arguments.get(2));
+            }
+        });
+        //allocate(size, "int" | "decimal"), an array of zeros. Large ones are kept off the heap.
+        globals.define("allocate", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object size = arguments.get(0);
+                String type = Strings.text(arguments.get(1));
+                if (!(size instanceof Integer)) throw new RuntimeError(null, "Expected int size for allocate.");
+                if (!"int".equals(type) && !"decimal".equals(type)) {
+                    throw new RuntimeError(null, "Expected \"int\" or \"decimal\" for allocate.");
+                }
+
+                int length = (Integer) size;
+                boolean decimal = type.equals("decimal");
+                interpreter.chargeArray(length, null);
+                if (length >= OffHeapArray.THRESHOLD) return OffHeapArray.allocate(length, decimal);
+                if (length < 0) throw new RuntimeError(null, "Array size cannot be negative.");
+                return new ArrayList<>(Collections.nCopies(length, decimal ? (Object) 0.0 : (Object) 0));
+            }
+        });
+    }
+
+    private static void forEachIndex(Interpreter interpreter, Callable function, int size, Body body) {
+        if (!runsInParallel(interpreter, function, size)) {
+            for (int i = 0; i < size; i++) {
+                body.run(interpreter, i);
+            }
+            return;
+        }
+
+        ForkJoinPool.commonPool().invoke(new Slice(interpreter, 0, size, grain(size), body));
+    }
+
+    private static boolean runsInParallel(Interpreter interpreter, Callable function, int size) {
+        return size >= PARALLEL_THRESHOLD && Purity.isPure(function, interpreter.globals);
+    }
+
+    static int grain(int size) {
+        return Math.max(MIN_GRAIN, size / (ForkJoinPool.commonPool().getParallelism() * 4));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> array(Object value, String name) {
+        if (!(value instanceof List)) throw new RuntimeError(null, "Expected array as first argument to " + name + ".");
+        return (List<Object>) value;
+    }
+
+    private static Callable function(Object value, int arity, String name) {
+        if (!(value instanceof Callable) || ((Callable) value).arity() != arity) {
+            throw new RuntimeError(null, "Expected function of " + arity + " argument(s) for " + name + ".");
+        }
+        return (Callable) value;
+    }
+
+    interface Body {
+        void run(Interpreter worker, int index);
+    }
+
+    //Splits [from, to) in halves until a slice is at most grain long, then runs it on a forked interpreter.
+    static class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Interpreter interpreter;
+        private final int from, to, grain;
+        private final Body body;
+
+        Slice(Interpreter interpreter, int from, int to, int grain, Body body) {
+            this.interpreter = interpreter;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                Interpreter worker = interpreter.fork();
+                for (int i = from; i < to; i++) {
+                    body.run(worker, i);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new Slice(interpreter, from, middle, grain, body),
+                    new Slice(interpreter, middle, to, grain, body));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+//Value of an atomic variable. Parallel loop bodies cannot assign to outer variables, so they
+//accumulate results through the atomic natives instead.
+class AtomicCell {
+    private final AtomicReference<Object> value;
+
+    AtomicCell(Object value) {
+        this.value = new AtomicReference<>(value);
+    }
+
+    Object get() {
+        return value.get();
+    }
+
+    void set(Object value) {
+        this.value.set(value);
+    }
+
+    Object add(Object delta) {
+        while (true) {
+            Object current = value.get();
+            Object sum = sum(current, delta);
+            if (value.compareAndSet(current, sum)) return sum;
+        }
+    }
+
+    private Object sum(Object left, Object right) {
+        if (left instanceof Integer && right instanceof Integer) return (int) left + (int) right;
+        if (left instanceof Number && right instanceof Number) return ((Number) left).doubleValue() + ((Number) right).doubleValue();
+
+        throw new RuntimeError(null, "Atomic values can only be added to numbers.");
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value.get());
+    }
+}
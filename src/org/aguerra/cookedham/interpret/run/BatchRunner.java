@@ -0,0 +1,173 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//Runs many scripts in one JVM. Each script is compiled and executed on a fixed pool of workers with
+//an ExecutionContext of its own, and its output and error output go to files named after it
+//(script.ch writes script.batch.out and script.batch.err, so expected output kept next to a script as
+//script.out is never overwritten). With an output directory, each script's files keep its path
+//relative to the directory all the scripts share, so scripts with the same name do not collide.
+public class BatchRunner {
+    public static final String OUT_EXTENSION = ".batch.out";
+    public static final String ERR_EXTENSION = ".batch.err";
+
+    private final int workers;
+    //Where output files go, null to write them next to each script
+    private final Path outputDirectory;
+    private final Budget budget;
+
+    public BatchRunner(int workers, Path outputDirectory) {
+        this(workers, outputDirectory, Budget.UNLIMITED);
+    }
+
+    //Each script runs within the budget of its own
+    public BatchRunner(int workers, Path outputDirectory, Budget budget) {
+        this.workers = workers;
+        this.outputDirectory = outputDirectory;
+        this.budget = budget;
+    }
+
+    //Every .ch file under a directory, or every path listed one per line in a list file
+    public static List<Path> scripts(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.walk(source)) {
+                return files.filter(file -> file.toString().endsWith(".ch") && Files.isRegularFile(file))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        List<Path> scripts = new ArrayList<>();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) scripts.add(Paths.get(line.trim()));
+        }
+        return scripts;
+    }
+
+    //Results come back in the order of the scripts
+    public List<Result> run(List<Path> scripts) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            Path root = commonRoot(scripts);
+            List<Future<Result>> pending = new ArrayList<>(scripts.size());
+            for (Path script : scripts) {
+                pending.add(pool.submit(() -> run(script, root)));
+            }
+
+            List<Result> results = new ArrayList<>(scripts.size());
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    results.add(pending.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new Result(scripts.get(i), Status.FAILED, 0, 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //Deepest directory containing every script, null if they are on different file system roots
+    static Path commonRoot(List<Path> scripts) {
+        Path root = null;
+        for (Path script : scripts) {
+            Path absolute = script.toAbsolutePath().normalize();
+            if (root == null) root = absolute.getParent();
+            while (root != null && !absolute.startsWith(root)) root = root.getParent();
+            if (root == null) return null;
+        }
+        return root;
+    }
+
+    private Result run(Path script, Path root) throws IOException {
+        long start = System.nanoTime();
+        Program program;
+        try {
+            program = ProgramCache.load(script.toFile());
+        } catch (CompileError error) {
+            return new Result(script, Status.COMPILE_ERROR, System.nanoTime() - start, 0, error.getErrors().get(0));
+        } catch (IOException e) {
+            return new Result(script, Status.FAILED, System.nanoTime() - start, 0, e.getMessage());
+        }
+        long compiled = System.nanoTime();
+
+        //Output is flushed once when the script ends
+        try (Writer out = Files.newBufferedWriter(outputFile(script, root, OUT_EXTENSION));
+             Writer err = Files.newBufferedWriter(outputFile(script, root, ERR_EXTENSION))) {
+            ExecutionContext context = new ExecutionContext(out, err, OutputSink.FlushPolicy.ON_EXIT);
+            boolean succeeded = context.execute(program, budget);
+
+            return new Result(script, succeeded ? Status.OK : Status.RUNTIME_ERROR,
+                    compiled - start, System.nanoTime() - compiled, context.getLastError());
+        }
+    }
+
+    private Path outputFile(Path script, Path root, String extension) throws IOException {
+        String name = script.getFileName().toString();
+        if (name.endsWith(".ch")) name = name.substring(0, name.length() - 3);
+
+        if (outputDirectory == null) return script.resolveSibling(name + extension);
+
+        //Scripts from different directories can share a name, so keep their directories below the root
+        if (root == null) throw new IOException("Scripts on different file system roots need separate batches.");
+        Path relative = root.relativize(script.toAbsolutePath().normalize());
+        Path directory = outputDirectory.toAbsolutePath().normalize();
+        Path file = directory.resolve(relative).resolveSibling(name + extension).normalize();
+        if (!file.startsWith(directory)) throw new IOException("Output for " + script + " would be outside " + outputDirectory + ".");
+
+        Files.createDirectories(file.getParent());
+        return file;
+    }
+
+    //One line per script with its status, compile time and run time, then a summary
+    public static void report(List<Result> results, PrintStream out) {
+        long compileTotal = 0, runTotal = 0;
+        int failed = 0;
+        for (Result result : results) {
+            out.printf("%-13s %9.2f ms %9.2f ms  %s%n", result.status, result.compileNanos / 1e6,
+                    result.runNanos / 1e6, result.script);
+            if (result.message != null && result.status != Status.OK) out.println("    " + result.message);
+
+            compileTotal += result.compileNanos;
+            runTotal += result.runNanos;
+            if (result.status != Status.OK) failed++;
+        }
+
+        out.printf("%d scripts, %d failed, %.2f ms compiling, %.2f ms running%n",
+                results.size(), failed, compileTotal / 1e6, runTotal / 1e6);
+    }
+
+    public enum Status { OK, COMPILE_ERROR, RUNTIME_ERROR, FAILED }
+
+    public static final class Result {
+        public final Path script;
+        public final Status status;
+        public final long compileNanos;
+        public final long runNanos;
+        //First error of a script that did not succeed
+        public final String message;
+
+        Result(Path script, Status status, long compileNanos, long runNanos, String message) {
+            this.script = script;
+            this.status = status;
+            this.compileNanos = compileNanos;
+            this.runNanos = runNanos;
+            this.message = message;
+        }
+    }
+}
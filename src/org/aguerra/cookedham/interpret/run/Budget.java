@@ -0,0 +1,58 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.time.Duration;
+
+//Limits for a single execution: how many steps it may take, how long it may run, how many array
+//elements and string bytes it may allocate and how deeply its function calls may nest. Budgets never change, so one budget can be handed to any
+//number of executions. Limits that are not set are unlimited.
+public final class Budget {
+    public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, 0, Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    //A step is one loop iteration, function call or spawn
+    final long maxSteps;
+    //Zero when there is no deadline
+    final long timeoutNanos;
+    final long maxArrayElements;
+    final long maxStringBytes;
+    //Calls nested on one thread, each spawned task and generator counts from its own first call
+    final int maxDepth;
+
+    private Budget(long maxSteps, long timeoutNanos, long maxArrayElements, long maxStringBytes, int maxDepth) {
+        this.maxSteps = maxSteps;
+        this.timeoutNanos = timeoutNanos;
+        this.maxArrayElements = maxArrayElements;
+        this.maxStringBytes = maxStringBytes;
+        this.maxDepth = maxDepth;
+    }
+
+    public Budget withMaxSteps(long maxSteps) {
+        return new Budget(positive(maxSteps), timeoutNanos, maxArrayElements, maxStringBytes, maxDepth);
+    }
+
+    public Budget withTimeout(Duration timeout) {
+        return new Budget(maxSteps, positive(timeout.toNanos()), maxArrayElements, maxStringBytes, maxDepth);
+    }
+
+    public Budget withMaxArrayElements(long maxArrayElements) {
+        return new Budget(maxSteps, timeoutNanos, positive(maxArrayElements), maxStringBytes, maxDepth);
+    }
+
+    public Budget withMaxStringBytes(long maxStringBytes) {
+        return new Budget(maxSteps, timeoutNanos, maxArrayElements, positive(maxStringBytes), maxDepth);
+    }
+
+    public Budget withMaxDepth(int maxDepth) {
+        return new Budget(maxSteps, timeoutNanos, maxArrayElements, maxStringBytes, (int) positive(maxDepth));
+    }
+
+    boolean isUnlimited() {
+        return maxSteps == Long.MAX_VALUE && timeoutNanos == 0
+                && maxArrayElements == Long.MAX_VALUE && maxStringBytes == Long.MAX_VALUE
+                && maxDepth == Integer.MAX_VALUE;
+    }
+
+    private static long positive(long limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Budget limits must be positive.");
+        return limit;
+    }
+}
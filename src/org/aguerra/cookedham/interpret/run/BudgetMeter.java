@@ -0,0 +1,54 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.lex.Token;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//What is left of a budget while one execution runs. The interpreter, its forked workers and spawned
+//tasks all spend from the same meter. Each of them takes steps in chunks and counts them down locally,
+//so the shared counter and the clock are only touched once per chunk. Steps left over in a finished
+//worker's chunk are lost, which makes the step limit slightly stricter than configured.
+final class BudgetMeter {
+    static final int CHUNK = 1024;
+
+    private final AtomicLong steps;
+    private final AtomicLong arrayElements;
+    private final AtomicLong stringBytes;
+    private final long deadline;
+    private final boolean timed;
+
+    BudgetMeter(Budget budget) {
+        steps = new AtomicLong(budget.maxSteps);
+        arrayElements = new AtomicLong(budget.maxArrayElements);
+        stringBytes = new AtomicLong(budget.maxStringBytes);
+        timed = budget.timeoutNanos > 0;
+        deadline = System.nanoTime() + budget.timeoutNanos;
+    }
+
+    //Takes the next chunk of steps and returns how many are left in it after the current one
+    long take(Token token) {
+        checkTime(token);
+
+        long before = steps.getAndAdd(-CHUNK);
+        if (before <= 0) throw new RuntimeError(token, "Execution exceeded its step limit.");
+        return Math.min(CHUNK, before) - 1;
+    }
+
+    void checkTime(Token token) {
+        if (timed && System.nanoTime() - deadline > 0) {
+            throw new RuntimeError(token, "Execution timed out.");
+        }
+    }
+
+    void chargeArray(long elements, Token token) {
+        if (arrayElements.addAndGet(-elements) < 0) {
+            throw new RuntimeError(token, "Execution exceeded its array element quota.");
+        }
+    }
+
+    void chargeString(long bytes, Token token) {
+        if (stringBytes.addAndGet(-bytes) < 0) {
+            throw new RuntimeError(token, "Execution exceeded its string quota.");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Value of a chan variable. Messages sit in a lock-free queue; the semaphores count queued messages
+//and free slots so blocked senders and receivers park instead of polling. A capacity of zero or
+//less makes the channel unbounded. Looping over a channel receives until it is closed. Senders queue
+//under the read side of a lock and close() marks the channel under the write side, so no message
+//can be queued behind the close marker. Null cannot be sent, since receiving it means closed or empty.
+class Channel implements Iterable<Object> {
+    //Queued by close() behind the last message. Receivers that find it put it back for the next one.
+    private static final Object CLOSED = new Object();
+
+    private final Class<?> elementClass;
+    private final ConcurrentLinkedQueue<Object> messages;
+    private final Semaphore available;
+    private final Semaphore space;
+    private final AtomicBoolean closed;
+    private final ReadWriteLock closing;
+
+    Channel(Class<?> elementClass, int capacity) {
+        this.elementClass = elementClass;
+        this.messages = new ConcurrentLinkedQueue<>();
+        this.available = new Semaphore(0);
+        this.space = capacity > 0 ? new Semaphore(capacity) : null;
+        this.closed = new AtomicBoolean(false);
+        this.closing = new ReentrantReadWriteLock();
+    }
+
+    //The same channel seen through a declaration that fixes its element type
+    private Channel(Channel channel, Class<?> elementClass) {
+        this.elementClass = elementClass;
+        this.messages = channel.messages;
+        this.available = channel.available;
+        this.space = channel.space;
+        this.closed = channel.closed;
+        this.closing = channel.closing;
+    }
+
+    //Held by a chan<T> variable: an untyped channel is checked as carrying T from then on through
+    //that variable, while one of another type is a mismatch
+    Channel typed(Class<?> elementClass) {
+        if (elementClass == null || elementClass == this.elementClass) return this;
+        if (this.elementClass != null) throw new RuntimeError(null, "Type mismatch: channel already carries another type.");
+        return new Channel(this, elementClass);
+    }
+
+    void send(Object value) {
+        if (value == null) throw new RuntimeError(null, "Cannot send null on a channel.");
+        if (elementClass != null && !elementClass.isInstance(value)) {
+            throw new RuntimeError(null, "Type mismatch: channel cannot carry " + value + ".");
+        }
+        if (closed.get()) throw new RuntimeError(null, "Cannot send on a closed channel.");
+
+        if (space != null) {
+            try {
+                space.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeError(null, "Interrupted while sending on channel.");
+            }
+        }
+
+        closing.readLock().lock();
+        try {
+            if (closed.get()) throw new RuntimeError(null, "Cannot send on a closed channel.");
+            messages.offer(value);
+            available.release();
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    //Blocks until a message arrives. Returns null once the channel is closed and drained.
+    Object receive() {
+        try {
+            available.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while receiving from channel.");
+        }
+        return take();
+    }
+
+    Object tryReceive() {
+        return available.tryAcquire() ? take() : null;
+    }
+
+    void close() {
+        closing.writeLock().lock();
+        try {
+            if (!closed.compareAndSet(false, true)) return;
+            messages.offer(CLOSED);
+            available.release();
+        } finally {
+            closing.writeLock().unlock();
+        }
+        //Wake senders waiting for space so they can fail instead of blocking forever
+        if (space != null) space.release(Integer.MAX_VALUE / 2);
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    private Object take() {
+        Object message = messages.poll();
+
+        if (message == CLOSED) {
+            messages.offer(CLOSED);
+            available.release();
+            return null;
+        }
+
+        if (space != null) space.release();
+        return message;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) next = receive();
+                return next != null;
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Object message = next;
+                next = null;
+                return message;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return closed.get() ? "<chan closed>" : "<chan>";
+    }
+}
@@ -0,0 +1,19 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.List;
+
+//Thrown when a script has lexing or parsing errors and cannot become a Program.
+public class CompileError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> errors;
+
+    CompileError(List<String> errors) {
+        super(String.join("\n", errors));
+        this.errors = errors;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,109 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.lex.Type;
+
+import java.util.List;
+
+//Built-ins for sharing state between concurrently running iterations and tasks.
+final class ConcurrencyNatives {
+    private ConcurrencyNatives() {}
+
+    static void define(Environment globals) {
+        globals.define("atomicGet", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return atomic(arguments.get(0), "atomicGet").get();
+            }
+        });
+        globals.define("atomicSet", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                atomic(arguments.get(0), "atomicSet").set(arguments.get(1));
+                return arguments.get(1);
+            }
+
+            @Override
+            boolean isParallelSafe() {
+                return true;
+            }
+        });
+        globals.define("atomicAdd", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return atomic(arguments.get(0), "atomicAdd").add(arguments.get(1));
+            }
+
+            @Override
+            boolean isParallelSafe() {
+                return true;
+            }
+        });
+        //channel(capacity, type) checks what is sent like a declared chan<type>. Type keywords are not
+        //expressions, so the element type is passed by name, and without it any value can be sent.
+        globals.define("channel", new Native(1, 1, true) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                if (!(arguments.get(0) instanceof Integer)) throw new RuntimeError(null, "Expected integer capacity for channel.");
+                Class<?> elementClass = arguments.size() > 1 ? elementClass(interpreter, arguments.get(1)) : null;
+                return new Channel(elementClass, (int) arguments.get(0));
+            }
+        });
+        globals.define("send", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                channel(arguments.get(0), "send").send(arguments.get(1));
+                return null;
+            }
+        });
+        globals.define("receive", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return channel(arguments.get(0), "receive").receive();
+            }
+        });
+        globals.define("tryReceive", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return channel(arguments.get(0), "tryReceive").tryReceive();
+            }
+        });
+        //Closes files as well as channels
+        globals.define("close", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                if (arguments.get(0) instanceof FileHandle) {
+                    FileNatives.close(interpreter, (FileHandle) arguments.get(0));
+                    return null;
+                }
+                channel(arguments.get(0), "close").close();
+                return null;
+            }
+        });
+    }
+
+    private static Class<?> elementClass(Interpreter interpreter, Object name) {
+        String type = Strings.text(name);
+        if (type != null) {
+            switch (type) {
+                case "int"     : return interpreter.getClassType(Type.INT);
+                case "decimal" : return interpreter.getClassType(Type.DECIMAL);
+                case "char"    : return interpreter.getClassType(Type.CHAR);
+                case "string"  : return interpreter.getClassType(Type.STRING);
+                case "boolean" : return interpreter.getClassType(Type.BOOLEAN);
+                case "array"   : return interpreter.getClassType(Type.ARRAY);
+                case "object"  : return interpreter.getClassType(Type.OBJECT);
+            }
+        }
+        throw new RuntimeError(null, "Expected element type name for channel, such as \"int\" or \"string\".");
+    }
+
+    private static Channel channel(Object value, String name) {
+        if (!(value instanceof Channel)) throw new RuntimeError(null, "Expected channel as first argument to " + name + ".");
+        return (Channel) value;
+    }
+
+    private static AtomicCell atomic(Object value, String name) {
+        if (!(value instanceof AtomicCell)) throw new RuntimeError(null, "Expected atomic as first argument to " + name + ".");
+        return (AtomicCell) value;
+    }
+}
@@ -1,23 +1,54 @@
 package org.aguerra.cookedham.interpret.run;
 
-import org.aguerra.cookedham.interpret.lex.Lexer;
-import org.aguerra.cookedham.interpret.lex.Token;
-import org.aguerra.cookedham.interpret.parse.Parser;
-import org.aguerra.cookedham.interpret.parse.Statement;
-
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.file.Files;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class CookedHam {
-    private static final Interpreter interpreter = new Interpreter();
+    //Snapshot to restore before running, so library functions are defined without running the library
+    private static final String IMAGE_PROPERTY = "cookedham.image";
+    private static final String BUDGET_USAGE =
+            " [--steps n] [--timeout ms] [--arrays elements] [--strings bytes] [--depth calls]";
+    private static final ExecutionContext context = new ExecutionContext();
     static boolean hadError = false;
-    static boolean hadRuntimeError = false;
 
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("filter")) {
+            filter(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("snapshot")) {
+            snapshot(args);
+            return;
+        }
+
+        //jham <script> runs the script, after restoring the snapshot named by -Dcookedham.image if set
+        String image = System.getProperty(IMAGE_PROPERTY);
+        if (image != null) context.restoreSnapshot(new File(image));
+        if (args.length == 1) {
+            runFile(args[0]);
+            return;
+        }
+
         /*if (args.length > 1) {
             System.out.println("Usage: jham [script]");
             System.exit(64);
@@ -32,41 +63,156 @@ public class CookedHam {
     }
 
     private static void runFile(String path) throws IOException {
-        /*byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));*/
-        run(path);
+        Program program;
+        try {
+            program = ProgramCache.load(new File(path));
+        } catch (CompileError error) {
+            // Stop if there was a syntax error.
+            printErrors(error);
+            System.exit(65);
+            return;
+        }
+
+        if (!context.execute(program)) System.exit(70);
     }
 
-    private static void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(input);
+    //jham serve <port | socket path> [pool size] [budget options]
+    private static void serve(String[] args) throws IOException {
+        String usage = "Usage: jham serve <port | socket path> [pool size]" + BUDGET_USAGE;
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        Budget budget = budget(arguments, usage);
+        if (arguments.size() < 2 || arguments.size() > 3) {
+            System.out.println(usage);
+            System.exit(64);
+        }
 
-        for (;;) {
-            System.out.print(">> ");
-            run(reader.readLine());
+        int poolSize = arguments.size() == 3 ? Integer.parseInt(arguments.get(2)) : Runtime.getRuntime().availableProcessors();
+        ScriptServer server = new ScriptServer(poolSize, budget);
+        server.serve(ScriptServer.open(arguments.get(1)));
+    }
+
+    //jham batch <directory | list file> [output directory] [workers] [budget options]
+    private static void batch(String[] args) throws IOException {
+        String usage = "Usage: jham batch <directory | list file> [output directory] [workers]" + BUDGET_USAGE;
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        Budget budget = budget(arguments, usage);
+        if (arguments.size() < 2 || arguments.size() > 4) {
+            System.out.println(usage);
+            System.exit(64);
+        }
+
+        Path output = arguments.size() >= 3 ? Paths.get(arguments.get(2)) : null;
+        int workers = arguments.size() == 4 ? Integer.parseInt(arguments.get(3)) : Runtime.getRuntime().availableProcessors();
+
+        List<BatchRunner.Result> results;
+        try {
+            results = new BatchRunner(workers, output, budget).run(BatchRunner.scripts(Paths.get(arguments.get(1))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         }
+
+        BatchRunner.report(results, System.out);
+        for (BatchRunner.Result result : results) {
+            if (result.status != BatchRunner.Status.OK) System.exit(70);
+        }
+    }
+
+    //Removes the budget options from the arguments and returns the budget they describe. Every script
+    //run by serve or batch gets the whole budget to itself.
+    private static Budget budget(List<String> arguments, String usage) {
+        Budget budget = Budget.UNLIMITED;
+        for (int i = 0; i < arguments.size(); ) {
+            String option = arguments.get(i);
+            if (!option.startsWith("--")) {
+                i++;
+                continue;
+            }
+
+            Budget limited;
+            try {
+                long value = Long.parseLong(arguments.get(i + 1));
+                switch (option) {
+                    case "--steps"   : limited = budget.withMaxSteps(value); break;
+                    case "--timeout" : limited = budget.withTimeout(Duration.ofMillis(value)); break;
+                    case "--arrays"  : limited = budget.withMaxArrayElements(value); break;
+                    case "--strings" : limited = budget.withMaxStringBytes(value); break;
+                    case "--depth"   : limited = budget.withMaxDepth(Math.toIntExact(value)); break;
+                    default          : limited = null;
+                }
+            } catch (IndexOutOfBoundsException | IllegalArgumentException | ArithmeticException e) {
+                limited = null;
+            }
+            if (limited == null) {
+                System.out.println("Bad option " + option + ".");
+                System.out.println(usage);
+                System.exit(64);
+            }
+
+            budget = limited;
+            arguments.subList(i, i + 2).clear();
+        }
+        return budget;
     }
 
-    private static void run(String path) {
-        Lexer lexer = new Lexer(new File(path));
+    //jham filter <script> < input, calls the script's record(line) for every line of standard input
+    private static void filter(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: jham filter <script> < input");
+            System.exit(64);
+        }
+
+        Program program;
+        try {
+            program = ProgramCache.load(new File(args[1]));
+        } catch (CompileError error) {
+            printErrors(error);
+            System.exit(65);
+            return;
+        }
+
+        int exitCode = LineFilter.run(program, new FileInputStream(FileDescriptor.in).getChannel(),
+                new FileOutputStream(FileDescriptor.out).getChannel(), new PrintWriter(System.err, true));
+        if (exitCode != 0) System.exit(exitCode);
+    }
 
-        List<Token> tokens = lexer.getTokens();
+    //jham snapshot <script> <image>, runs the script and saves the globals it defined
+    private static void snapshot(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.out.println("Usage: jham snapshot <script> <image>");
+            System.exit(64);
+        }
 
-        Parser parser = new Parser(tokens);
-        //Expression expression = parser.parse();
-        List<Statement> statements = parser.parse();
+        runFile(args[1]);
+        try {
+            context.saveSnapshot(new File(args[2]));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(74);
+        }
+    }
 
-        // Stop if there was a syntax error.
-        if (hadError) return;
-        if (hadRuntimeError) System.exit(70);
+    private static void runPrompt() throws IOException {
+        InputStreamReader input = new InputStreamReader(System.in);
+        BufferedReader reader = new BufferedReader(input);
 
-        interpreter.interpret(statements);
+        for (;;) {
+            System.out.print(">> ");
+            String line = reader.readLine();
+            if (line == null) break;
+
+            try {
+                context.execute(Program.compile(line));
+            } catch (CompileError error) {
+                printErrors(error);
+            }
+        }
     }
 
-    public static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() +
-                "\n[line " + error.token.getLineNum() + "]");
-        hadRuntimeError = true;
+    private static void printErrors(CompileError error) {
+        for (String message : error.getErrors()) {
+            System.err.println(message);
+        }
     }
 
     public static void error(int line, String message) {
@@ -78,4 +224,4 @@ public class CookedHam {
                 "[line " + line + "] Error" + where + ": " + message);
         hadError = true;
     }
-}
\ No newline at end of file
+}
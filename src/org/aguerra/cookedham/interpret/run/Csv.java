@@ -0,0 +1,247 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+//Lazy sequence returned by csv, csvTyped and csvColumns. Like Lines, every loop over it opens the
+//file and reads it a row at a time, closing it after the last row. Rows are arrays of strings, or of
+//values of the given column types. With a batch size it yields arrays of columns instead, each holding
+//the values of up to that many rows, with large int and decimal columns kept off the heap. Every row
+//and batch is charged to the budget of the interpreter that made the sequence.
+class Csv implements Iterable<Object> {
+    static final byte STRING = 0;
+    static final byte INT = 1;
+    static final byte DECIMAL = 2;
+    static final byte SKIP = 3;
+
+    private final Path path;
+    //Null for rows of strings
+    private final byte[] types;
+    private final int batch;
+    private final Interpreter interpreter;
+
+    Csv(Path path, byte[] types, int batch, Interpreter interpreter) {
+        this.path = path;
+        this.types = types;
+        this.batch = batch;
+        this.interpreter = interpreter;
+    }
+
+    static byte type(Object value) {
+        String name = Strings.text(value);
+        if ("string".equals(name)) return STRING;
+        if ("int".equals(name)) return INT;
+        if ("decimal".equals(name)) return DECIMAL;
+        if ("skip".equals(name)) return SKIP;
+        throw new RuntimeError(null, "Expected \"int\", \"decimal\", \"string\" or \"skip\" as CSV column type.");
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return batch > 0 ? new BatchIterator(channel) : new RowIterator(channel);
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Cannot open " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "csv(" + path + ")";
+    }
+
+    private abstract class CsvIterator implements Iterator<Object>, Closeable {
+        private final FileChannel channel;
+        final CsvReader reader;
+        private boolean first = true;
+
+        CsvIterator(FileChannel channel) {
+            this.channel = channel;
+            this.reader = new CsvReader(channel);
+        }
+
+        //Moves to the next row, skipping a header: a first row with text in an int or decimal column
+        boolean advance() {
+            try {
+                boolean more = reader.next();
+                if (more && first && types != null && isHeader()) more = reader.next();
+                first = false;
+                if (!more) channel.close();
+                return more;
+            } catch (IOException e) {
+                throw new RuntimeError(null, "Cannot read file: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        String string(int field) {
+            String value = reader.string(field);
+            interpreter.chargeString(value.length(), null);
+            return value;
+        }
+
+        void checkFields() {
+            if (reader.fields() < types.length) {
+                throw new RuntimeError(null, "CSV row has " + reader.fields() + " fields, expected " + types.length + ".");
+            }
+        }
+
+        private boolean isHeader() {
+            for (int i = 0; i < types.length && i < reader.fields(); i++) {
+                if ((types[i] == INT || types[i] == DECIMAL) && !reader.isNumber(i)) return true;
+            }
+            return false;
+        }
+    }
+
+    private class RowIterator extends CsvIterator {
+        private Object next;
+
+        RowIterator(FileChannel channel) {
+            super(channel);
+            next = read();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Object next() {
+            if (next == null) throw new NoSuchElementException();
+            Object row = next;
+            next = read();
+            return row;
+        }
+
+        private Object read() {
+            if (!advance()) return null;
+
+            if (types == null) {
+                interpreter.chargeArray(reader.fields(), null);
+                ArrayList<Object> row = new ArrayList<>(reader.fields());
+                for (int i = 0; i < reader.fields(); i++) {
+                    row.add(string(i));
+                }
+                return row;
+            }
+
+            checkFields();
+            interpreter.chargeArray(types.length, null);
+            ArrayList<Object> row = new ArrayList<>(types.length);
+            for (int i = 0; i < types.length; i++) {
+                switch (types[i]) {
+                    case STRING  : row.add(string(i)); break;
+                    case INT     : row.add(reader.parseInt(i)); break;
+                    case DECIMAL : row.add(reader.parseDecimal(i)); break;
+                }
+            }
+            return row;
+        }
+    }
+
+    private class BatchIterator extends CsvIterator {
+        //One of these per column, filled with the batch's values and reused for the next batch
+        private final int[][] ints = new int[types.length][];
+        private final double[][] decimals = new double[types.length][];
+        private final List<List<Object>> strings = new ArrayList<>();
+        //Columns that end up in a batch, the skipped ones are never stored
+        private final int kept;
+        private boolean more;
+
+        BatchIterator(FileChannel channel) {
+            super(channel);
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == INT) ints[i] = new int[Math.min(batch, 1024)];
+                if (types[i] == DECIMAL) decimals[i] = new double[Math.min(batch, 1024)];
+                strings.add(types[i] == STRING ? new ArrayList<>() : null);
+            }
+            int columns = 0;
+            for (byte type : types) {
+                if (type != SKIP) columns++;
+            }
+            kept = columns;
+            more = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return more;
+        }
+
+        @Override
+        public Object next() {
+            if (!more) throw new NoSuchElementException();
+
+            int count = 0;
+            interpreter.chargeArray(kept, null);
+            while (more && count < batch) {
+                checkFields();
+                interpreter.chargeArray(kept, null);
+                for (int i = 0; i < types.length; i++) {
+                    switch (types[i]) {
+                        case STRING  : strings.get(i).add(string(i)); break;
+                        case INT     : {
+                            if (count == ints[i].length) ints[i] = Arrays.copyOf(ints[i], Math.min(batch, count * 2));
+                            ints[i][count] = reader.parseInt(i);
+                            break;
+                        }
+                        case DECIMAL : {
+                            if (count == decimals[i].length) decimals[i] = Arrays.copyOf(decimals[i], Math.min(batch, count * 2));
+                            decimals[i][count] = reader.parseDecimal(i);
+                            break;
+                        }
+                    }
+                }
+                count++;
+                more = advance();
+            }
+
+            ArrayList<Object> columns = new ArrayList<>();
+            for (int i = 0; i < types.length; i++) {
+                switch (types[i]) {
+                    case STRING  : {
+                        columns.add(new ArrayList<>(strings.get(i)));
+                        strings.get(i).clear();
+                        break;
+                    }
+                    case INT     : columns.add(column(ints[i], count)); break;
+                    case DECIMAL : columns.add(column(decimals[i], count)); break;
+                }
+            }
+            return columns;
+        }
+
+        private List<Object> column(int[] values, int count) {
+            if (count >= OffHeapArray.THRESHOLD) return OffHeapArray.of(values, count);
+            ArrayList<Object> column = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                column.add(values[i]);
+            }
+            return column;
+        }
+
+        private List<Object> column(double[] values, int count) {
+            if (count >= OffHeapArray.THRESHOLD) return OffHeapArray.of(values, count);
+            ArrayList<Object> column = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                column.add(values[i]);
+            }
+            return column;
+        }
+    }
+}
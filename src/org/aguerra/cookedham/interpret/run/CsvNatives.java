@@ -0,0 +1,55 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+//Built-ins for reading CSV files a row or a batch of rows at a time. Column types are given as an
+//array of "int", "decimal", "string" and "skip", since type keywords are not expressions.
+final class CsvNatives {
+    private CsvNatives() {}
+
+    static void define(Environment globals) {
+        //csv(path), every row as an array of strings
+        globals.define("csv", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new Csv(path(arguments.get(0), "csv"), null, 0, interpreter);
+            }
+        });
+        //csvTyped(path, types), every row as an array of its columns' values
+        globals.define("csvTyped", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new Csv(path(arguments.get(0), "csvTyped"), types(arguments.get(1), "csvTyped"), 0, interpreter);
+            }
+        });
+        //csvColumns(path, types, batch), arrays of columns holding up to batch rows each
+        globals.define("csvColumns", new Native(3) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object batch = arguments.get(2);
+                if (!(batch instanceof Integer) || (Integer) batch <= 0) {
+                    throw new RuntimeError(null, "Expected positive batch size for csvColumns.");
+                }
+                return new Csv(path(arguments.get(0), "csvColumns"), types(arguments.get(1), "csvColumns"), (Integer) batch, interpreter);
+            }
+        });
+    }
+
+    private static Path path(Object value, String name) {
+        if (!Strings.isString(value)) throw new RuntimeError(null, "Expected file path for " + name + ".");
+        return Paths.get(value.toString());
+    }
+
+    private static byte[] types(Object value, String name) {
+        if (!(value instanceof List)) throw new RuntimeError(null, "Expected array of column types for " + name + ".");
+
+        List<?> names = (List<?>) value;
+        byte[] types = new byte[names.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = Csv.type(names.get(i));
+        }
+        return types;
+    }
+}
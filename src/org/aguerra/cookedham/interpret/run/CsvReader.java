@@ -0,0 +1,227 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//Splits comma separated rows out of a channel through one large direct buffer, like LineReader. A
+//row is kept in the buffer and only the offsets of its fields are recorded, so int and decimal fields
+//are parsed straight from the bytes and only string fields are decoded. Fields may be quoted, with ""
+//for a quote inside, and quoted fields may contain commas and line breaks.
+final class CsvReader {
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L
+    };
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(LineReader.BUFFER_SIZE);
+    private boolean endOfInput = false;
+
+    //Field i of the current row is the bytes from starts[i] to ends[i], without its quotes
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private int fields = 0;
+    private byte[] scratch = new byte[256];
+
+    CsvReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    //Moves to the next row that is not blank, false at the end of the input
+    boolean next() throws IOException {
+        while (true) {
+            int end = rowEnd();
+            if (end < 0) return false;
+
+            int next = end < buffer.limit() ? end + 1 : end;
+            if (end > buffer.position() && buffer.get(end - 1) == '\r') end--;
+            if (end > buffer.position()) {
+                split(buffer.position(), end);
+                buffer.position(next);
+                return true;
+            }
+            buffer.position(next);
+        }
+    }
+
+    int fields() {
+        return fields;
+    }
+
+    String string(int field) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+
+        int count = 0;
+        for (int i = start; i < start + length; i++) {
+            byte b = buffer.get(i);
+            scratch[count++] = b;
+            //A doubled quote inside a quoted field stands for one quote
+            if (b == '"' && quoted[field]) i++;
+        }
+        return new String(scratch, 0, count, StandardCharsets.UTF_8);
+    }
+
+    boolean isNumber(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) i++;
+
+        boolean digits = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') digits = true;
+            else if (b != '.' && b != 'e' && b != 'E' && b != '-' && b != '+') return false;
+        }
+        return digits;
+    }
+
+    int parseInt(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end) throw notA("int", field);
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw notA("int", field);
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) throw notA("int", field);
+        }
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) throw notA("int", field);
+        return (int) value;
+    }
+
+    //Plain decimals with up to 15 significant digits are exact as a long divided by a power of ten.
+    //Anything else, exponents included, goes through Double.parseDouble.
+    double parseDecimal(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean sawDigit = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (b >= '0' && b <= '9' && digits < 15 && fraction < 15) {
+                mantissa = mantissa * 10 + (b - '0');
+                sawDigit = true;
+                if (mantissa != 0) digits++;
+                if (fraction >= 0) fraction++;
+            } else {
+                return slowDecimal(field);
+            }
+        }
+        if (!sawDigit) throw notA("decimal", field);
+
+        double value = fraction > 0 ? (double) mantissa / POWERS_OF_TEN[fraction] : (double) mantissa;
+        return negative ? -value : value;
+    }
+
+    private double slowDecimal(int field) {
+        try {
+            return Double.parseDouble(string(field));
+        } catch (NumberFormatException e) {
+            throw notA("decimal", field);
+        }
+    }
+
+    private RuntimeError notA(String type, int field) {
+        return new RuntimeError(null, "Expected " + type + " in CSV column " + (field + 1) + ", found '" + string(field) + "'.");
+    }
+
+    //Index of the '\n' ending the row at the buffer's position, or the limit when the input ends
+    //without one. Reads more input until the whole row is in the buffer. -1 at the end of the input.
+    private int rowEnd() throws IOException {
+        while (true) {
+            boolean inQuotes = false;
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                byte b = buffer.get(i);
+                if (b == '"') inQuotes = !inQuotes;
+                else if (b == '\n' && !inQuotes) return i;
+            }
+
+            if (endOfInput) return buffer.hasRemaining() ? buffer.limit() : -1;
+            fill();
+        }
+    }
+
+    private void split(int start, int end) {
+        fields = 0;
+        int i = start;
+        while (true) {
+            if (fields == starts.length) grow();
+
+            if (i < end && buffer.get(i) == '"') {
+                int fieldStart = ++i;
+                while (i < end) {
+                    if (buffer.get(i) == '"') {
+                        if (i + 1 < end && buffer.get(i + 1) == '"') i += 2;
+                        else break;
+                    } else {
+                        i++;
+                    }
+                }
+                record(fieldStart, i, true);
+                //Skip the closing quote and anything up to the next comma
+                while (i < end && buffer.get(i) != ',') i++;
+            } else {
+                int fieldStart = i;
+                while (i < end && buffer.get(i) != ',') i++;
+                record(fieldStart, i, false);
+            }
+
+            if (i >= end) return;
+            i++;
+        }
+    }
+
+    private void record(int start, int end, boolean isQuoted) {
+        starts[fields] = start;
+        ends[fields] = end;
+        quoted[fields] = isQuoted;
+        fields++;
+    }
+
+    private void grow() {
+        starts = Arrays.copyOf(starts, starts.length * 2);
+        ends = Arrays.copyOf(ends, ends.length * 2);
+        quoted = Arrays.copyOf(quoted, quoted.length * 2);
+    }
+
+    //Moves the unread part to the front and reads more after it, growing the buffer for long rows
+    private void fill() throws IOException {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+
+        if (channel.read(buffer) == -1) endOfInput = true;
+        buffer.flip();
+    }
+}
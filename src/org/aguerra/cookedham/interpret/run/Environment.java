@@ -5,19 +5,27 @@ import org.aguerra.cookedham.interpret.lex.Type;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 class Environment {
     private Environment enclosingScope;
-    private final Map<String, Array> values = new HashMap<>();
+    private final Map<String, Array> values;
+    //Off-heap arrays declared in this scope, released by release() when it ends
+    private List<OffHeapArray> owned;
 
     public Environment() {
+        //The global scope is shared by every spawned task, so it has to tolerate concurrent writes
         enclosingScope = null;
+        values = new ConcurrentHashMap<>();
     }
 
     public Environment(Environment enclosingScope) {
         this.enclosingScope = enclosingScope;
+        values = new HashMap<>();
     }
 
     public Object get(Token name) {
@@ -29,6 +37,17 @@ class Environment {
         throw new RuntimeError(name, "Undefined variable '" + name.getToken() + "'.");
     }
 
+    Object lookup(String name) {
+        if(values.containsKey(name)) return values.get(name).getValue();
+        if(enclosingScope != null) return enclosingScope.lookup(name);
+        return null;
+    }
+
+    //Names defined directly in this scope
+    Set<String> names() {
+        return values.keySet();
+    }
+
     public void assign(Token name, Object value) {
         if (values.containsKey(name.getToken())) {
             checkType(getTypeOfVariable(name.getToken()), value, name);
@@ -50,6 +69,20 @@ class Environment {
         values.put(name, new Array(value, getType(value)));
     }
 
+    //Only the thread running a scope declares in it and ends it, so neither needs a lock
+    void own(OffHeapArray array) {
+        if (owned == null) owned = new ArrayList<>();
+        owned.add(array);
+    }
+
+    void release() {
+        if (owned == null) return;
+        for (OffHeapArray array : owned) {
+            array.release();
+        }
+        owned = null;
+    }
+
     private Type getTypeOfVariable(String key) {
         return getType(values.get(key).getValue());
     }
@@ -60,8 +93,16 @@ class Environment {
         else if(value instanceof Double) return Type.DECIMAL;
         else if(value instanceof Boolean) return Type.BOOLEAN;
         else if(value instanceof Character) return Type.CHAR;
-        else if(value instanceof String) return Type.STRING;
-        else if(value instanceof ArrayList) return Type.ARRAY;
+        else if(Strings.isString(value)) return Type.STRING;
+        else if(value instanceof StringBuilder) return Type.BUILDER;
+        else if(value instanceof Pattern) return Type.PATTERN;
+        else if(value instanceof List) return Type.ARRAY;
+        else if(value instanceof AtomicCell) return Type.ATOMIC;
+        else if(value instanceof Task) return Type.FUTURE;
+        else if(value instanceof Channel) return Type.CHAN;
+        else if(value instanceof FileHandle) return Type.FILE;
+        else if(value instanceof Map) return Type.OBJECT;
+        else if(value instanceof Range || value instanceof Generator || value instanceof Lines || value instanceof Csv || value instanceof JsonEvents) return Type.ARRAY;
 
         //TODO: Finish error
         //throw new RuntimeError(name, "Invalid type: ");
@@ -0,0 +1,141 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+//Isolated place to run programs in: its own globals, output, error output and error state. Contexts
+//share nothing with each other, so separate contexts can execute programs on separate threads at
+//once. A single context must only be used by one thread at a time.
+public class ExecutionContext {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputSink.FlushPolicy policy;
+    private OutputSink out;
+    private PrintWriter err;
+    private Interpreter interpreter;
+
+    public ExecutionContext() {
+        this(new OutputStreamWriter(System.out), new PrintWriter(System.err, true), OutputSink.defaultPolicy());
+    }
+
+    //Output reaches the writer a line at a time
+    public ExecutionContext(Writer out, Writer err) {
+        this(out, err, OutputSink.FlushPolicy.ON_NEWLINE);
+    }
+
+    public ExecutionContext(Writer out, Writer err, OutputSink.FlushPolicy policy) {
+        this.policy = policy;
+        this.out = outputSink(out);
+        this.err = printWriter(err);
+        this.interpreter = new Interpreter(this.out, this.err);
+    }
+
+    //Runs the program against this context's globals. Returns false if it stopped on a runtime error.
+    public boolean execute(Program program) {
+        return execute(program, Budget.UNLIMITED);
+    }
+
+    //Runs the program within the budget. Running out of any limit stops it with a runtime error.
+    public boolean execute(Program program, Budget budget) {
+        interpreter.setBudget(budget);
+        interpreter.setScript(program.getPath());
+        try {
+            interpreter.interpret(program.getStatements());
+        } finally {
+            interpreter.setBudget(Budget.UNLIMITED);
+        }
+        return !interpreter.hadRuntimeError();
+    }
+
+    //Calls a function defined by a previously executed program. Runtime errors are reported like in
+    //execute and leave null as the result.
+    public Object call(String name, Object... arguments) {
+        Object function = interpreter.globals.lookup(name);
+        if (!(function instanceof Callable)) throw new IllegalArgumentException("No function named '" + name + "'.");
+        boolean accepted = function instanceof Native ? ((Native) function).accepts(arguments.length)
+                : ((Callable) function).arity() == arguments.length;
+        if (!accepted) {
+            throw new IllegalArgumentException("Function '" + name + "' expects " + ((Callable) function).arity() + " arguments.");
+        }
+
+        return hostValue(interpreter.callFunction((Callable) function, Arrays.asList(arguments)));
+    }
+
+    public boolean isFunction(String name) {
+        return interpreter.globals.lookup(name) instanceof Callable;
+    }
+
+    public void define(String name, Object value) {
+        interpreter.globals.define(name, value);
+    }
+
+    //Value of a global variable, or null if it is not defined
+    public Object get(String name) {
+        return hostValue(interpreter.globals.lookup(name));
+    }
+
+    //Value of the last expression statement at the top level of the last executed program, or null
+    public Object getResult() {
+        return hostValue(interpreter.getResult());
+    }
+
+    //Writes the functions and data this context's globals hold, see Snapshot
+    public void saveSnapshot(File file) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file.toPath());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE))) {
+            Snapshot.write(interpreter.globals, out);
+        }
+    }
+
+    //Defines everything saved in the snapshot as globals of this context
+    public void restoreSnapshot(File file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE))) {
+            Snapshot.read(in, interpreter);
+        }
+    }
+
+    public boolean hadRuntimeError() {
+        return interpreter.hadRuntimeError();
+    }
+
+    //Message of the runtime error that stopped the last execute or call, or null
+    public String getLastError() {
+        return interpreter.getLastError();
+    }
+
+    public void setOutput(Writer out, Writer err) {
+        this.out = outputSink(out);
+        this.err = printWriter(err);
+        interpreter.setOutput(this.out, this.err);
+    }
+
+    //Throws away every global defined by the programs executed so far
+    public void reset() {
+        interpreter = new Interpreter(out, err);
+    }
+
+    //Strings built by the interpreter, such as ropes, reach the host as plain strings
+    private static Object hostValue(Object value) {
+        return Strings.isString(value) ? value.toString() : value;
+    }
+
+    private OutputSink outputSink(Writer writer) {
+        return writer instanceof OutputSink ? (OutputSink) writer : new OutputSink(writer, policy);
+    }
+
+    private static PrintWriter printWriter(Writer writer) {
+        return writer instanceof PrintWriter ? (PrintWriter) writer : new PrintWriter(writer, true);
+    }
+}
@@ -0,0 +1,114 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Value of a file variable: a file opened for reading or writing through a FileChannel. Reads go
+//through a LineReader and writes are encoded into a large direct buffer that is written out when it
+//fills and when the file is closed. The interpreter closes files a script leaves open when the
+//execution that opened them ends.
+class FileHandle {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final String path;
+    private FileChannel channel;
+    private LineReader reader;
+    private ByteBuffer output;
+    private CharsetEncoder encoder;
+
+    //Placeholder for declared but never opened file variables
+    FileHandle() {
+        this.path = null;
+    }
+
+    private FileHandle(String path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    static FileHandle openRead(Path path) throws IOException {
+        FileHandle file = new FileHandle(path.toString(), FileChannel.open(path, StandardOpenOption.READ));
+        file.reader = new LineReader(file.channel);
+        return file;
+    }
+
+    static FileHandle openWrite(Path path) throws IOException {
+        FileHandle file = new FileHandle(path.toString(), FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+        file.output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        file.encoder = StandardCharsets.UTF_8.newEncoder();
+        return file;
+    }
+
+    synchronized String readLine() throws IOException {
+        return reader().readLine();
+    }
+
+    synchronized String readAll() throws IOException {
+        return reader().readRest();
+    }
+
+    synchronized boolean atEnd() throws IOException {
+        return reader().atEnd();
+    }
+
+    synchronized void write(String text) throws IOException {
+        if (output == null) throw new RuntimeError(null, channel == null ? notOpen() : "File " + path + " is not open for writing.");
+
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, output, false);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                return;
+            }
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (channel == null) return;
+
+        try {
+            if (output != null) {
+                encoder.encode(CharBuffer.allocate(0), output, true);
+                encoder.flush(output);
+                drain();
+            }
+        } finally {
+            channel.close();
+            channel = null;
+            reader = null;
+            output = null;
+        }
+    }
+
+    private LineReader reader() {
+        if (reader == null) throw new RuntimeError(null, channel == null ? notOpen() : "File " + path + " is not open for reading.");
+        return reader;
+    }
+
+    private void drain() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+
+    private String notOpen() {
+        return path == null ? "File is not open." : "File " + path + " is closed.";
+    }
+
+    @Override
+    public String toString() {
+        return "<file " + (path == null ? "" : path) + ">";
+    }
+}
@@ -0,0 +1,163 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+//Built-ins for reading and writing files. Reads and writes go through FileHandle's direct buffers,
+//and lines(path) streams a file line by line so whole files are never held in memory.
+final class FileNatives {
+    private FileNatives() {}
+
+    static void define(Environment globals) {
+        globals.define("openRead", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Path path = path(arguments.get(0), "openRead");
+                try {
+                    return interpreter.opened(FileHandle.openRead(path));
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot open " + path + " for reading: " + e.getMessage());
+                }
+            }
+        });
+        globals.define("openWrite", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Path path = path(arguments.get(0), "openWrite");
+                try {
+                    return interpreter.opened(FileHandle.openWrite(path));
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot open " + path + " for writing: " + e.getMessage());
+                }
+            }
+        });
+        globals.define("readLine", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                try {
+                    return file(arguments.get(0), "readLine").readLine();
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot read file: " + e.getMessage());
+                }
+            }
+        });
+        globals.define("readAll", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                FileHandle file = file(arguments.get(0), "readAll");
+                try {
+                    String text = file.readAll();
+                    interpreter.chargeString(text.length(), null);
+                    return text;
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot read file: " + e.getMessage());
+                }
+            }
+        });
+        //readLine returns null at the end, which typed variables cannot hold, so loops check this first
+        globals.define("atEnd", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                try {
+                    return file(arguments.get(0), "atEnd").atEnd();
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot read file: " + e.getMessage());
+                }
+            }
+        });
+        globals.define("write", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                FileHandle file = file(arguments.get(0), "write");
+                try {
+                    file.write(interpreter.stringify(arguments.get(1)));
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot write file: " + e.getMessage());
+                }
+                return null;
+            }
+        });
+        //Strings have no escapes, so lines are ended by writeLine rather than by writing "\n"
+        globals.define("writeLine", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                FileHandle file = file(arguments.get(0), "writeLine");
+                try {
+                    file.write(interpreter.stringify(arguments.get(1)));
+                    file.write(System.lineSeparator());
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot write file: " + e.getMessage());
+                }
+                return null;
+            }
+        });
+        globals.define("lines", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new Lines(path(arguments.get(0), "lines"));
+            }
+        });
+        //save(path, value) and load(path) keep values between runs in ValueCodec's binary format
+        globals.define("save", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Path path = path(arguments.get(0), "save");
+                try {
+                    ValueCodec.save(path, arguments.get(1));
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot save to " + path + ": " + e.getMessage());
+                }
+                return null;
+            }
+        });
+        globals.define("load", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Path path = path(arguments.get(0), "load");
+                try {
+                    return ValueCodec.load(path, interpreter);
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot load " + path + ": " + e.getMessage());
+                }
+            }
+        });
+        //mapArray(path, "int" | "decimal"), an array over a file of little-endian numbers. Type keywords
+        //are not expressions, so the element type is passed by name.
+        globals.define("mapArray", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Path path = path(arguments.get(0), "mapArray");
+                String type = Strings.text(arguments.get(1));
+                if (!"int".equals(type) && !"decimal".equals(type)) {
+                    throw new RuntimeError(null, "Expected \"int\" or \"decimal\" for mapArray.");
+                }
+                try {
+                    return MappedArray.map(path, type.equals("decimal"));
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot map " + path + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    static void close(Interpreter interpreter, FileHandle file) {
+        interpreter.closed(file);
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Cannot close file: " + e.getMessage());
+        }
+    }
+
+    private static Path path(Object value, String name) {
+        if (!Strings.isString(value)) throw new RuntimeError(null, "Expected file path for " + name + ".");
+        return Paths.get(value.toString());
+    }
+
+    private static FileHandle file(Object value, String name) {
+        if (!(value instanceof FileHandle)) throw new RuntimeError(null, "Expected file for " + name + ".");
+        return (FileHandle) value;
+    }
+}
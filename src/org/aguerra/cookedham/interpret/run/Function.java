@@ -7,40 +7,74 @@ import java.math.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 public class Function implements Callable {
     protected final Statement.Function declaration;
-    Function(Statement.Function declaration) {
+    //Globals of the script or module that declared the function
+    final Environment closure;
+    Function(Statement.Function declaration, Environment closure) {
         this.declaration = declaration;
+        this.closure = closure;
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(interpreter.globals);
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).getToken(),
-                    arguments.get(i));
+        interpreter.tick(declaration.name);
+
+        //Generators run their body lazily, once per iteration, so they keep their arguments
+        if (declaration.generator) {
+            for (Object argument : arguments) {
+                OffHeapArray.escape(argument);
+            }
+            return new Generator(this, interpreter, arguments);
         }
 
         try {
-            interpreter.executeBlock(declaration.body, environment);
+            execute(interpreter, arguments);
         } catch (Return returnValue) {
             if (checkType(returnValue.value)) {
                 return returnValue.value;
             }
-            CookedHam.runtimeError(new RuntimeError(declaration.name, "Expected return type " + declaration.returnType + "."));
+            throw new RuntimeError(declaration.name, "Expected return type " + declaration.returnType + ".");
         }
 
         return null;
     }
 
+    void execute(Interpreter interpreter, List<Object> arguments) {
+        Environment environment = new Environment(closure);
+        for (int i = 0; i < declaration.params.size(); i++) {
+            environment.define(declaration.params.get(i).getToken(),
+                    arguments.get(i));
+        }
+
+        interpreter.enter(declaration.name);
+        try {
+            interpreter.executeBlock(declaration.body, environment);
+        } catch (StackOverflowError e) {
+            throw new RuntimeError(declaration.name, Interpreter.STACK_OVERFLOW);
+        } finally {
+            interpreter.leave();
+        }
+    }
+
     private boolean checkType(Object value) {
         return (value instanceof Integer && declaration.returnType == Type.INT) ||
            (value instanceof Double && declaration.returnType == Type.DECIMAL) ||
-           (value instanceof String && declaration.returnType == Type.STRING) ||
+           (Strings.isString(value) && declaration.returnType == Type.STRING) ||
+           (value instanceof StringBuilder && declaration.returnType == Type.BUILDER) ||
+           (value instanceof Pattern && declaration.returnType == Type.PATTERN) ||
            (value instanceof Character && declaration.returnType == Type.CHAR) ||
                 (value instanceof Boolean && declaration.returnType == Type.BOOLEAN) ||
-                (value instanceof ArrayList && declaration.returnType == Type.ARRAY);
+                (value instanceof List && declaration.returnType == Type.ARRAY) ||
+                (value instanceof AtomicCell && declaration.returnType == Type.ATOMIC) ||
+                (value instanceof Task && declaration.returnType == Type.FUTURE) ||
+                (value instanceof Channel && declaration.returnType == Type.CHAN) ||
+                (value instanceof FileHandle && declaration.returnType == Type.FILE) ||
+                (value instanceof Map && declaration.returnType == Type.OBJECT) ||
+                ((value instanceof Range || value instanceof Generator || value instanceof Lines || value instanceof Csv || value instanceof JsonEvents) && declaration.returnType == Type.ARRAY);
     }
 
     @Override
@@ -0,0 +1,201 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.Closeable;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+//Value returned by calling a function that yields. Each loop over it runs the body on a forked
+//interpreter as a coroutine: the body only runs while the loop waits for its next element, and each
+//yield hands the element over and waits until the loop asks again. The body is on a task of its own
+//so its stack can be kept between elements, but the two never run at the same time, so side effects
+//of the body and of the loop interleave the same way on every run. A loop that stops early closes
+//the run, and the body's next yield then ends it.
+//
+//Indexing and size() read a single run that is kept along with what it has produced, so the body is
+//never run again to reach an element.
+class Generator implements Iterable<Object> {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Function function;
+    private final Interpreter interpreter;
+    private final List<Object> arguments;
+
+    //Elements produced for indexing, and the run still producing them until it ends
+    private List<Object> elements;
+    private Run cursor;
+
+    Generator(Function function, Interpreter interpreter, List<Object> arguments) {
+        this.function = function;
+        this.interpreter = interpreter;
+        this.arguments = arguments;
+    }
+
+    static void emit(Run run, Object value) {
+        run.yield(value);
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new Run(function, interpreter.fork(), arguments);
+    }
+
+    synchronized Object get(int index) {
+        if (index < 0) throw Sequences.outOfBounds();
+        while (elements == null || elements.size() <= index) {
+            if (!advance()) throw Sequences.outOfBounds();
+        }
+        return elements.get(index);
+    }
+
+    synchronized int size() {
+        while (advance()) {
+            //Produces everything up to the end
+        }
+        return elements.size();
+    }
+
+    private boolean advance() {
+        if (elements == null) {
+            elements = new ArrayList<>();
+            cursor = new Run(function, interpreter.fork(), arguments);
+            //A body left waiting for its next element is ended once nothing can index it anymore
+            CLEANER.register(this, cursor::close);
+        }
+        if (cursor == null) return false;
+
+        if (cursor.hasNext()) {
+            interpreter.chargeArray(1, null);
+            elements.add(cursor.next());
+            return true;
+        }
+        cursor = null;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+
+    //Thrown out of a yield when the loop was closed, to unwind the body
+    private static final class Stopped extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+
+    static final class Run implements Iterator<Object>, Closeable {
+        private final Function function;
+        private final Interpreter worker;
+        private final List<Object> arguments;
+
+        //Guarded by this. The loop sets resumed to let the body run, the body sets produced or finished
+        //to hand control back.
+        private boolean started = false;
+        private boolean resumed = false;
+        private boolean produced = false;
+        private boolean finished = false;
+        private boolean closed = false;
+        private Object value;
+        private RuntimeException failure;
+
+        //Element taken by hasNext() and not yet returned by next(), used only by the loop's thread
+        private boolean hasNext = false;
+        private Object next;
+
+        Run(Function function, Interpreter worker, List<Object> arguments) {
+            this.function = function;
+            this.worker = worker;
+            this.arguments = arguments;
+            worker.yielded = this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext) return true;
+
+            synchronized (this) {
+                if (!finished && !closed) {
+                    if (!started) {
+                        started = true;
+                        Tasks.execute(this::produce);
+                    }
+                    resumed = true;
+                    notifyAll();
+                    while (!produced && !finished) {
+                        await();
+                    }
+                }
+
+                if (produced) {
+                    produced = false;
+                    next = value;
+                    value = null;
+                    hasNext = true;
+                    return true;
+                }
+                if (failure != null) throw failure;
+                return false;
+            }
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Object element = next;
+            next = null;
+            hasNext = false;
+            return element;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        private void produce() {
+            try {
+                function.execute(worker, arguments);
+            } catch (Return | Stopped ended) {
+                //A return or a closed loop simply ends the generator
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+            } finally {
+                synchronized (this) {
+                    finished = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        //Called by the body: hands the element to the loop and waits until it asks for the next one
+        private synchronized void yield(Object element) {
+            if (closed) throw new Stopped();
+            value = element;
+            produced = true;
+            resumed = false;
+            notifyAll();
+            while (!resumed && !closed) {
+                await();
+            }
+            if (closed) throw new Stopped();
+        }
+
+        private void await() {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeError(null, "Interrupted while running generator.");
+            }
+        }
+    }
+}
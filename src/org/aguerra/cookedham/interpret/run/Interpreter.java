@@ -5,82 +5,288 @@ import org.aguerra.cookedham.interpret.lex.Type;
 import org.aguerra.cookedham.interpret.parse.Expression;
 import org.aguerra.cookedham.interpret.parse.Statement;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
 
 public class Interpreter implements Expression.Visitor<Object>, Statement.Visitor<Void> {
-    final Environment globals = new Environment();
-    private Environment environment = globals;
+    //Reported when the thread's stack runs out before the budget's call depth limit is reached
+    static final String STACK_OVERFLOW = "Execution ran out of stack.";
+
+    final Environment globals;
+    private Environment environment;
+    //Run receiving this interpreter's yields while it runs a generator body
+    Generator.Run yielded;
+    //Modules imported during this context's executions, by absolute path
+    private final Map<Path, Module> modules;
+    //Files opened during the current execution and not closed yet, shared with workers and modules
+    private Set<FileHandle> openFiles;
+    //Directory imports are resolved against, null for the working directory
+    private Path directory;
+    private OutputSink out;
+    private PrintWriter err;
+    private boolean hadRuntimeError = false;
+    private String lastError = null;
+    //Value of the last expression statement at the top level of the program being interpreted
+    private Object result = null;
+    //Budget of the current execution, null when it is unlimited
+    private BudgetMeter meter;
+    //Steps left in the chunk taken from the meter
+    private long credit;
+    //Function calls currently nested on this interpreter's thread
+    private int depth;
+    private int maxDepth = Integer.MAX_VALUE;
 
     Interpreter() {
+        this(new OutputSink(new PrintWriter(System.out), OutputSink.defaultPolicy()), new PrintWriter(System.err, true));
+    }
 
-        globals.define("clock", new Callable() {
-            @Override
-            public int arity() { return 0; }
+    Interpreter(OutputSink out, PrintWriter err) {
+        this(out, err, new ConcurrentHashMap<>());
+    }
 
+    private Interpreter(OutputSink out, PrintWriter err, Map<Path, Module> modules) {
+        globals = new Environment();
+        this.modules = modules;
+        openFiles = ConcurrentHashMap.newKeySet();
+        environment = globals;
+        this.out = out;
+        this.err = err;
+
+        globals.define("clock", new Native(0) {
             @Override
             public Object call(Interpreter interpreter,
                                List<Object> arguments) {
                 return (double)System.currentTimeMillis() / 1000.0;
             }
-
-            @Override
-            public String toString() { return "<native fn>"; }
         });
-        globals.define("displayln", new Function(null) {
-            @Override
-            public int arity() { return 1; }
-
+        globals.define("displayln", new Native(1, false) {
             @Override
             public Object call(Interpreter interpreter,
                                List<Object> arguments) {
-                System.out.println(arguments.get(0));
+                interpreter.out.println(arguments.get(0));
                 return null;
 
             }
 
             @Override
-            public String toString() { return "<native fn>"; }
+            boolean isParallelSafe() {
+                return true;
+            }
         });
-        globals.define("display", new Function(null) {
-            @Override
-            public int arity() { return 1; }
-
+        globals.define("display", new Native(1, false) {
             @Override
             public Object call(Interpreter interpreter,
                                List<Object> arguments) {
-                System.out.print(arguments.get(0));
+                interpreter.out.print(arguments.get(0));
                 return null;
 
             }
 
             @Override
-            public String toString() { return "<native fn>"; }
+            boolean isParallelSafe() {
+                return true;
+            }
         });
-        globals.define("size", new Function(null) {
-            @Override
-            public int arity() { return 1; }
-
+        globals.define("size", new Native(1) {
             @Override
             public Object call(Interpreter interpreter,
                                List<Object> arguments) {
-                return ((ArrayList)arguments.get(0)).size();
+                return Sequences.size(arguments.get(0));
 
             }
-
-            @Override
-            public String toString() { return "<native fn>"; }
         });
+        ArrayNatives.define(globals);
+        ConcurrencyNatives.define(globals);
+        FileNatives.define(globals);
+        CsvNatives.define(globals);
+        JsonNatives.define(globals);
+        StringNatives.define(globals);
+        RegexNatives.define(globals);
+        NumericNatives.define(globals);
+    }
+
+    //Worker sharing this interpreter's globals but with its own current environment, so it can run
+    //function bodies on another thread without touching this interpreter's state.
+    private Interpreter(Interpreter parent) {
+        globals = parent.globals;
+        environment = globals;
+        out = parent.out;
+        err = parent.err;
+        meter = parent.meter;
+        maxDepth = parent.maxDepth;
+        modules = parent.modules;
+        openFiles = parent.openFiles;
+        directory = parent.directory;
+    }
+
+    Interpreter fork() {
+        return new Interpreter(this);
+    }
+
+    //Interpreter with globals of its own for running a module's top level. Shares this interpreter's
+    //output, budget and imported modules.
+    Interpreter moduleInterpreter(Path directory) {
+        Interpreter module = new Interpreter(out, err, modules);
+        module.directory = directory;
+        module.meter = meter;
+        module.maxDepth = maxDepth;
+        module.openFiles = openFiles;
+        return module;
+    }
+
+    //Runs a module's top level, leaving runtime errors to the code that used the module
+    void executeModule(List<Statement> statements) {
+        for (Statement statement : statements) {
+            execute(statement);
+        }
+    }
+
+    //Imports in the script at this path are resolved against its directory
+    void setScript(String path) {
+        directory = path == null ? null : Paths.get(path).toAbsolutePath().getParent();
     }
 
     void interpret(List<Statement> statements) {
+        hadRuntimeError = false;
+        lastError = null;
+        result = null;
+
         try {
             for (Statement statement : statements) {
-                execute(statement);
+                if (statement instanceof Statement.LineExpression) {
+                    result = evaluate(((Statement.LineExpression) statement).expression);
+                } else {
+                    execute(statement);
+                }
             }
         } catch (RuntimeError error) {
-            CookedHam.runtimeError(error);
+            runtimeError(error);
+        } catch (StackOverflowError error) {
+            runtimeError(new RuntimeError(null, STACK_OVERFLOW));
+        } finally {
+            closeFiles();
+            out.flush();
+        }
+    }
+
+    //Calls a function from outside of any script, reporting runtime errors the way interpret does
+    Object callFunction(Callable function, List<Object> arguments) {
+        hadRuntimeError = false;
+        lastError = null;
+
+        try {
+            return function.call(this, arguments);
+        } catch (RuntimeError error) {
+            runtimeError(error);
+            return null;
+        } catch (StackOverflowError error) {
+            runtimeError(new RuntimeError(null, STACK_OVERFLOW));
+            return null;
+        } finally {
+            closeFiles();
+            out.flush();
+        }
+    }
+
+    FileHandle opened(FileHandle file) {
+        openFiles.add(file);
+        return file;
+    }
+
+    void closed(FileHandle file) {
+        openFiles.remove(file);
+    }
+
+    //Files the script left open are flushed and closed once its execution ends, even when it failed
+    private void closeFiles() {
+        for (FileHandle file : openFiles) {
+            openFiles.remove(file);
+            try {
+                file.close();
+            } catch (IOException e) {
+                runtimeError(new RuntimeError(null, "Cannot close file: " + e.getMessage()));
+            }
+        }
+    }
+
+    void runtimeError(RuntimeError error) {
+        lastError = error.getMessage();
+        hadRuntimeError = true;
+        //Whatever the script printed before failing comes out ahead of the error
+        out.flush();
+
+        if (error.token == null) {
+            err.println(error.getMessage());
+        } else {
+            err.println(error.getMessage() +
+                    "\n[line " + error.token.getLineNum() + "]");
         }
+        err.flush();
+    }
+
+    boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    String getLastError() {
+        return lastError;
+    }
+
+    Object getResult() {
+        return result;
+    }
+
+    void setBudget(Budget budget) {
+        meter = budget.isUnlimited() ? null : new BudgetMeter(budget);
+        credit = 0;
+        maxDepth = budget.maxDepth;
+    }
+
+    //Called on entering a function body, every enter is matched by a leave once the body ends
+    void enter(Token token) {
+        if (depth >= maxDepth) throw new RuntimeError(token, "Execution exceeded its call depth limit.");
+        depth++;
+    }
+
+    void leave() {
+        depth--;
+    }
+
+    //Counts one step against the budget. Called at loop back-edges, function calls and spawns.
+    void tick(Token token) {
+        if (meter != null && --credit < 0) credit = meter.take(token);
+    }
+
+    //For natives that run long without taking steps, such as a regex backtracking through its input
+    void checkTime(Token token) {
+        if (meter != null) meter.checkTime(token);
+    }
+
+    void chargeArray(long elements, Token token) {
+        if (meter != null) meter.chargeArray(elements, token);
+    }
+
+    //Java strings hold two bytes per character
+    void chargeString(long length, Token token) {
+        if (meter != null) meter.chargeString(length * Character.BYTES, token);
+    }
+
+    void setOutput(OutputSink out, PrintWriter err) {
+        this.out = out;
+        this.err = err;
     }
 
 
@@ -132,6 +338,7 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
                 execute(statement);
             }
         } finally {
+            environment.release();
             this.environment = previousEnvironment;
         }
     }
@@ -149,15 +356,29 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     @Override
     public Void visitFunctionStatement(Statement.Function statement) {
-        Function function = new Function(statement);
+        Function function = new Function(statement, globals);
         environment.define(statement.name.getToken(), function);
         return null;
     }
 
+    @Override
+    public Void visitImportStatement(Statement.Import statement) {
+        Path path = Paths.get(statement.path.getToken());
+        if (directory != null) path = directory.resolve(path);
+        path = path.toAbsolutePath().normalize();
+
+        environment.define(statement.name.getToken(), module(path));
+        return null;
+    }
+
+    //Every import of the same file shares one module, so its top level only runs once
+    Module module(Path path) {
+        return modules.computeIfAbsent(path, Module::new);
+    }
+
     @Override
     public Void visitPrintStatement(Statement.Print statement) {
-        Object value = evaluate(statement.expression);
-        System.out.println(stringify(value));
+        println(evaluate(statement.expression));
         return null;
     }
 
@@ -166,9 +387,22 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         Object value = null;
         if (statement.value != null) value = evaluate(statement.value);
 
+        OffHeapArray.escape(value);
         throw new Return(value);
     }
 
+    @Override
+    public Void visitYieldStatement(Statement.Yield statement) {
+        if(yielded == null) throw new RuntimeError(statement.keyword, "Can only yield inside a generator.");
+
+        Object value = null;
+        if (statement.value != null) value = evaluate(statement.value);
+
+        OffHeapArray.escape(value);
+        Generator.emit(yielded, value);
+        return null;
+    }
+
     @Override
     public Void visitVariableStatement(Statement.Variable statement) {
         Object value = null;
@@ -181,6 +415,16 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         //TODO: Check to see if all values match type of array
 
         environment.checkType(statement.type, value, statement.name);
+        if(value instanceof Channel && statement.arrayType != null) {
+            value = ((Channel)value).typed(getClassType(statement.arrayType));
+        }
+        if(statement.offheap) {
+            OffHeapArray array = OffHeapArray.claim((List<?>) value, statement.arrayType == Type.DECIMAL);
+            environment.own(array);
+            value = array;
+        } else {
+            OffHeapArray.escape(value);
+        }
         environment.define(statement.name.getToken(), value);
 
         return null;
@@ -200,6 +444,7 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     @Override
     public Object visitAssignExpression(Expression.Assign expression) {
         Object value = evaluate(expression.value);
+        OffHeapArray.escape(value);
 
         if(expression.arrayIndex != null) {
             int index = compressToInt(evaluate(expression.arrayIndex));
@@ -222,9 +467,12 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     @Override
     public Object visitArrayBlockExpression(Expression.ArrayBlock expression) {
+        chargeArray(expression.elements.size(), null);
         ArrayList<Object> elements = new ArrayList<>();
         for(Expression express : expression.elements) {
-            elements.add(evaluate(express));
+            Object element = evaluate(express);
+            OffHeapArray.escape(element);
+            elements.add(element);
         }
 
         return elements;
@@ -270,27 +518,66 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         while (isTruthy(evaluate(statement.condition))) {
             execute(statement.body);
             evaluate(statement.increment);
+            tick(null);
         }
         return null;
     }
 
     @Override
     public Void visitForEachStatement(Statement.ForEach statement) {
+        Token name = ((Statement.Variable)statement.definition).name;
+        Object array = evaluate(statement.array);
+
+        if(statement.parallel && array instanceof List && ((List<?>)array).size() >= ArrayNatives.PARALLEL_THRESHOLD) {
+            executeParallel(statement, list(array));
+            return null;
+        }
+
+        if(!(array instanceof Iterable)) {
+            throw new RuntimeError(name, "Can only loop over arrays, ranges, generators, channels, lines, CSV files and JSON events.");
+        }
+
+        //Ranges, generators and channels produce their elements one at a time instead of holding them all.
+        //A loop left early by a return or an error closes its iterator so files and generator bodies
+        //do not stay open.
         execute(statement.definition);
-        int index = 0;
-        ArrayList<Object> array = (ArrayList<Object>)evaluate(statement.array);
-        while(index < array.size()) {
-            environment.assign(((Statement.Variable)statement.definition).name, array.get(index));
-            execute(statement.body);
-            index++;
+        Iterator<?> elements = ((Iterable<?>)array).iterator();
+        try {
+            while(elements.hasNext()) {
+                environment.assign(name, elements.next());
+                execute(statement.body);
+                tick(name);
+            }
+        } finally {
+            Sequences.close(elements);
         }
         return null;
     }
 
+    //Runs each iteration on a forked interpreter with its own environment holding the loop variable
+    private void executeParallel(Statement.ForEach statement, List<Object> array) {
+        Statement.Variable definition = (Statement.Variable)statement.definition;
+        String sharedWriter = Purity.findSharedWriter(statement, environment);
+        if(sharedWriter != null) {
+            throw new RuntimeError(definition.name, "Parallel loop " + sharedWriter + ".");
+        }
+
+        Environment enclosing = environment;
+        ForkJoinPool.commonPool().invoke(new ArrayNatives.Slice(this, 0, array.size(), ArrayNatives.grain(array.size()), (worker, index) -> {
+            Environment iteration = new Environment(enclosing);
+            Object element = array.get(index);
+            iteration.checkType(definition.type, element, definition.name);
+            iteration.define(definition.name.getToken(), element);
+            worker.executeBlock(Collections.singletonList(statement.body), iteration);
+            worker.tick(definition.name);
+        }));
+    }
+
     @Override
     public Void visitWhileStatement(Statement.While statement) {
         while (isTruthy(evaluate(statement.condition))) {
             execute(statement.body);
+            tick(null);
         }
         return null;
     }
@@ -308,13 +595,21 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
                     return handleAddition(left, right);
                 }
 
-                else if (left instanceof String) {
-                    return (String)left + right;
+                else if (Strings.isString(left)) {
+                    //Joined as a rope, so building a string in a loop does not copy it on every step. Only
+                    //the added text is charged, since the left side was charged when it was made.
+                    CharSequence added = Strings.isString(right) ? (CharSequence) right : String.valueOf(right);
+                    chargeString(added.length(), expression.operator);
+                    return Rope.join((CharSequence) left, added);
                 }
 
-                else if (left instanceof ArrayList && right instanceof ArrayList) {
-                    ((ArrayList) left).addAll((ArrayList)right);
-                    return left;
+                else if (left instanceof List && right instanceof List) {
+                    //Appends to the left array in place, so a = a + { x } in a loop does not copy a every
+                    //time. Ranges and file-backed arrays cannot grow and are copied instead.
+                    chargeArray(((List<?>) right).size(), expression.operator);
+                    List<Object> joined = left instanceof ArrayList ? list(left) : new ArrayList<>((List<?>) left);
+                    joined.addAll((List<?>) right);
+                    return joined;
                 }
 
                 else {
@@ -363,55 +658,171 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     @Override
     public Object visitCallExpression(Expression.Call expression) {
         Object callee = evaluate(expression.calle);
+        List<Object> arguments = evaluateArguments(expression);
+        Callable function = checkCallable(callee, arguments, expression.paren);
+        //Natives that are not pure may keep their arguments, such as put storing a value in an object
+        if (function instanceof Native && !((Native) function).isPure()) escape(arguments);
+
+        return invoke(function, arguments, expression.paren);
+    }
+
+    @Override
+    public Object visitGetExpression(Expression.Get expression) {
+        Object object = evaluate(expression.object);
+
+        if(!(object instanceof Module)) {
+            throw new RuntimeError(expression.name, "Only modules have members.");
+        }
+
+        return ((Module)object).get(this, expression.name);
+    }
 
+    @Override
+    public Object visitSpawnExpression(Expression.Spawn expression) {
+        Object callee = evaluate(expression.call.calle);
+        List<Object> arguments = evaluateArguments(expression.call);
+        Callable function = checkCallable(callee, arguments, expression.call.paren);
+        tick(expression.keyword);
+        escape(arguments);
+
+        //The task runs on its own interpreter so it never touches this one's current environment
+        Interpreter worker = fork();
+        return new Task(Tasks.submit(() -> worker.invoke(function, arguments, expression.call.paren)));
+    }
+
+    @Override
+    public Object visitAwaitExpression(Expression.Await expression) {
+        Object task = evaluate(expression.task);
+
+        if(!(task instanceof Task)) {
+            throw new RuntimeError(expression.keyword, "Can only await futures.");
+        }
+
+        return ((Task)task).await(expression.keyword);
+    }
+
+    private static void escape(List<Object> values) {
+        for (Object value : values) {
+            OffHeapArray.escape(value);
+        }
+    }
+
+    private List<Object> evaluateArguments(Expression.Call expression) {
         List<Object> arguments = new ArrayList<>();
         for (Expression argument : expression.arguments) {
 
             arguments.add(evaluate(argument));
         }
 
+        return arguments;
+    }
+
+    private Callable checkCallable(Object callee, List<Object> arguments, Token paren) {
         if (!(callee instanceof Callable)) {
-            throw new RuntimeError(expression.paren,
+            throw new RuntimeError(paren,
                     "Can only call functions and classes.");
         }
 
         Callable function = (Callable)callee;
 
-        if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expression.paren, "Expected " +
+        boolean accepted = function instanceof Native ? ((Native) function).accepts(arguments.size())
+                : arguments.size() == function.arity();
+        if (!accepted) {
+            throw new RuntimeError(paren, "Expected " +
                     function.arity() + " arguments but got " +
                     arguments.size() + ".");
         }
 
-        return function.call(this, arguments);
+        return function;
+    }
+
+    private Object invoke(Callable function, List<Object> arguments, Token paren) {
+        try {
+            return function.call(this, arguments);
+        } catch (RuntimeError error) {
+            //Natives have no call site of their own, so report their errors at the call
+            if (error.token == null) throw new RuntimeError(paren, error.getMessage());
+            throw error;
+        }
     }
 
     @Override
     public Object visitLenExpression(Expression.Len expression) {
         Object value = evaluate(expression.expression);
 
-        if(!(value instanceof ArrayList))  {
-            throw new RuntimeError(expression.keyword, "Expected array for len expression");
+        //Strings and builders have a length too, and a view's length is known without copying it
+        if(value instanceof CharSequence) return ((CharSequence)value).length();
+        if(!Sequences.isSequence(value))  {
+            throw new RuntimeError(expression.keyword, "Expected array or string for len expression");
         }
 
-        return ((ArrayList)value).size();
+        return Sequences.size(value);
     }
 
-    private boolean isTruthy(Object object) {
+    boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
         return true;
     }
 
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object value) {
+        return (List<Object>) value;
+    }
+
+    //Strings compare by their characters whether they are Strings, views or ropes, and so do the
+    //strings inside arrays and objects, which are compared element by element for that reason
     private boolean isEqual(Object a, Object b) {
+        if (a == b) return true;
         // nil is only equal to nil.
-        if (a == null && b == null) return true;
-        if (a == null) return false;
+        if (a == null || b == null) return false;
+        if (Strings.isString(a) && Strings.isString(b)) return Strings.equal((CharSequence) a, (CharSequence) b);
+
+        if (a instanceof List && b instanceof List) {
+            List<?> left = (List<?>) a;
+            List<?> right = (List<?>) b;
+            if (left.size() != right.size()) return false;
+            Iterator<?> elements = right.iterator();
+            for (Object element : left) {
+                if (!isEqual(element, elements.next())) return false;
+            }
+            return true;
+        }
+
+        if (a instanceof Map && b instanceof Map) {
+            Map<?, ?> left = (Map<?, ?>) a;
+            Map<?, ?> right = (Map<?, ?>) b;
+            if (left.size() != right.size()) return false;
+            for (Map.Entry<?, ?> entry : left.entrySet()) {
+                if (!right.containsKey(entry.getKey()) || !isEqual(entry.getValue(), right.get(entry.getKey()))) return false;
+            }
+            return true;
+        }
 
         return a.equals(b);
     }
 
-    private String stringify(Object object) {
+    //Prints a value the way stringify formats it, writing ints and whole decimals without building a string
+    void println(Object value) {
+        if (value instanceof Integer) {
+            out.println((long)(int)value);
+        } else if (isWholeDecimal(value)) {
+            out.println((long)(double)value);
+        } else {
+            out.println(stringify(value));
+        }
+    }
+
+    //Decimals Double.toString writes as digits and ".0", which stringify trims. Negative zero keeps its sign.
+    private boolean isWholeDecimal(Object value) {
+        if (!(value instanceof Double)) return false;
+
+        double decimal = (double)value;
+        return decimal == Math.rint(decimal) && Math.abs(decimal) < 1e7
+                && (decimal != 0 || Double.doubleToRawLongBits(decimal) == 0);
+    }
+
+    String stringify(Object object) {
         if (object == null) return "null";
 
         if(object instanceof Variable) return ((Variable) object).getValue()+"";
@@ -436,6 +847,13 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
             case STRING  : return "";
             case BOOLEAN : return false;
             case ARRAY   : return new ArrayList<>();
+            case ATOMIC  : return new AtomicCell(0);
+            case FUTURE  : return new Task(CompletableFuture.completedFuture(null));
+            case CHAN    : return new Channel(arrayType == null ? null : getClassType(arrayType), 0);
+            case FILE    : return new FileHandle();
+            case OBJECT  : return new LinkedHashMap<>();
+            case BUILDER : return new StringBuilder();
+            case PATTERN : return Pattern.compile("");
         }
         return null;
     }
@@ -446,14 +864,15 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         throw new RuntimeError(null, "Expected integer as index.");
     }
 
-    public Class getClassType(Type arrayType) {
+    public Class<?> getClassType(Type arrayType) {
         switch (arrayType) {
             case INT     : return Integer.class;
             case DECIMAL : return Double.class;
             case CHAR    : return Character.class;
-            case STRING  : return String.class;
+            case STRING  : return CharSequence.class;
             case BOOLEAN : return Boolean.class;
-            case ARRAY   : return ArrayList.class;
+            case ARRAY   : return List.class;
+            case OBJECT  : return Map.class;
         }
         return null;
     }
@@ -487,32 +906,32 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     }
 
     private Object handleSubtraction(Object left, Object right) {
-        if(isDouble(left)|| isDouble(right)) return new Double(left + "") - new Double(right + "");
+        if(isDouble(left)|| isDouble(right)) return Double.parseDouble(left + "") - Double.parseDouble(right + "");
         return (int)left - (int)right;
     }
 
     private Object handleAddition(Object left, Object right) {
-        if(isDouble(left)|| isDouble(right)) return new Double(left + "") + new Double(right + "");
+        if(isDouble(left)|| isDouble(right)) return Double.parseDouble(left + "") + Double.parseDouble(right + "");
         return (int)left + (int)right;
     }
 
     private Object handleMultiplication(Object left, Object right) {
-        if(isDouble(left)|| isDouble(right)) return new Double(left + "") * new Double(right + "");
+        if(isDouble(left)|| isDouble(right)) return Double.parseDouble(left + "") * Double.parseDouble(right + "");
         return (int)left * (int)right;
     }
 
     private Object handleDivision(Object left, Object right) {
-        if(isDouble(left)|| isDouble(right)) return new Double(left + "") / new Double(right + "");
+        if(isDouble(left)|| isDouble(right)) return Double.parseDouble(left + "") / Double.parseDouble(right + "");
         return (int)left / (int)right;
     }
 
     private Object handleMod(Object left, Object right) {
-        if(isDouble(left)|| isDouble(right)) return new Double(left + "") % new Double(right + "");
+        if(isDouble(left)|| isDouble(right)) return Double.parseDouble(left + "") % Double.parseDouble(right + "");
         return (int)left % (int)right;
     }
 
     private Object handlePow(Object left, Object right) {
-        if(isDouble(left)|| isDouble(right)) return Math.pow(new Double(left + ""), new Double(right + ""));
+        if(isDouble(left)|| isDouble(right)) return Math.pow(Double.parseDouble(left + ""), Double.parseDouble(right + ""));
         return Math.pow((int)left, (int)right);
     }
 
@@ -0,0 +1,104 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//Lazy sequence returned by jsonEvents(path). Every loop over it streams the file through a
+//JsonReader and yields one array per event: its name, such as "startObject", "name" or "number",
+//followed by the name, string or number it carries. The file is closed after the last event, when
+//reading it fails, or when the loop is left early.
+class JsonEvents implements Iterable<Object> {
+    private static final String[] NAMES = {
+            "startObject", "endObject", "startArray", "endArray", "name", "string", "number", "boolean", "boolean", "null"
+    };
+
+    private final Path path;
+
+    JsonEvents(Path path) {
+        this.path = path;
+    }
+
+    static Reader open(Path path) throws IOException {
+        return Channels.newReader(FileChannel.open(path, StandardOpenOption.READ), StandardCharsets.UTF_8.newDecoder(), -1);
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        try {
+            return new EventIterator(open(path));
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Cannot open " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "jsonEvents(" + path + ")";
+    }
+
+    private static class EventIterator implements Iterator<Object>, Closeable {
+        private final Reader input;
+        private final JsonReader reader;
+        private JsonReader.Event next;
+
+        EventIterator(Reader input) {
+            this.input = input;
+            this.reader = new JsonReader(input);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != JsonReader.Event.END;
+        }
+
+        @Override
+        public Object next() {
+            if (next == JsonReader.Event.END) throw new NoSuchElementException();
+
+            ArrayList<Object> event = new ArrayList<>(2);
+            event.add(NAMES[next.ordinal()]);
+            switch (next) {
+                case NAME   :
+                case STRING : event.add(reader.string()); break;
+                case NUMBER : event.add(reader.number()); break;
+                case TRUE   : event.add(true); break;
+                case FALSE  : event.add(false); break;
+            }
+            advance();
+            return event;
+        }
+
+        private void advance() {
+            try {
+                next = reader.next();
+                if (next == JsonReader.Event.END) input.close();
+            } catch (IOException e) {
+                close();
+                throw new RuntimeError(null, "Cannot read file: " + e.getMessage());
+            } catch (RuntimeError e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            next = JsonReader.Event.END;
+            try {
+                input.close();
+            } catch (IOException ignored) {
+                //Nothing more is read from it either way
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//Built-ins for JSON and for the objects it is read into. Objects are maps from names to values,
+//kept in the order their names were first added.
+final class JsonNatives {
+    private JsonNatives() {}
+
+    static void define(Environment globals) {
+        //parseJson(text) parses the string as JSON, readJson(path) streams the file it names
+        globals.define("parseJson", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                String source = Strings.text(arguments.get(0));
+                if (source == null) throw new RuntimeError(null, "Expected JSON text for parseJson.");
+
+                try {
+                    return new JsonReader(source).value(interpreter);
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot read JSON: " + e.getMessage());
+                }
+            }
+        });
+        globals.define("readJson", new Native(1, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                String source = Strings.text(arguments.get(0));
+                if (source == null) throw new RuntimeError(null, "Expected file path for readJson.");
+
+                Path path = Paths.get(source);
+                try (Reader input = JsonEvents.open(path)) {
+                    return new JsonReader(input).value(interpreter);
+                } catch (IOException e) {
+                    throw new RuntimeError(null, "Cannot read " + path + ": " + e.getMessage());
+                }
+            }
+        });
+        globals.define("toJson", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                String json = JsonWriter.write(arguments.get(0));
+                interpreter.chargeString(json.length(), null);
+                return json;
+            }
+        });
+        globals.define("jsonEvents", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                String path = Strings.text(arguments.get(0));
+                if (path == null) throw new RuntimeError(null, "Expected file path for jsonEvents.");
+                return new JsonEvents(Paths.get(path));
+            }
+        });
+        //get(object, name) is null for missing names, so has(object, name) is checked first where it matters
+        globals.define("get", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return object(arguments.get(0), "get").get(name(arguments.get(1), "get"));
+            }
+        });
+        globals.define("has", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return object(arguments.get(0), "has").containsKey(name(arguments.get(1), "has"));
+            }
+        });
+        globals.define("put", new Native(3, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                object(arguments.get(0), "put").put(name(arguments.get(1), "put"), arguments.get(2));
+                return arguments.get(2);
+            }
+        });
+        globals.define("keys", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return new ArrayList<Object>(object(arguments.get(0), "keys").keySet());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value, String name) {
+        if (!(value instanceof Map)) throw new RuntimeError(null, "Expected object for " + name + ".");
+        return (Map<String, Object>) value;
+    }
+
+    private static String name(Object value, String name) {
+        if (!Strings.isString(value)) throw new RuntimeError(null, "Expected string name for " + name + ".");
+        return value.toString();
+    }
+}
@@ -0,0 +1,329 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//Pull parser for JSON over a char buffer. next() returns one event at a time and only strings and
+//numbers produce a value, so documents read from a file are never held in memory as a whole. value()
+//builds the next complete value out of the events without any tree in between, charging every
+//string and every array or object element to the interpreter's budget as it goes.
+final class JsonReader {
+    enum Event {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    //Deeper documents are refused, which also bounds the recursion of value() and JsonWriter
+    static final int MAX_DEPTH = 512;
+
+    //Null when the whole document was given as a string
+    private final Reader reader;
+    private char[] buffer;
+    private int position = 0;
+    private int limit;
+
+    //Nesting of the open containers, true for objects, and whether the next token there is a name
+    private boolean[] stack = new boolean[32];
+    private int depth = 0;
+    private boolean expectName = false;
+    private boolean first = true;
+    private boolean done = false;
+
+    private final StringBuilder text = new StringBuilder();
+    private Object number;
+
+    JsonReader(String json) {
+        this.reader = null;
+        this.buffer = json.toCharArray();
+        this.limit = buffer.length;
+    }
+
+    JsonReader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.limit = 0;
+    }
+
+    //Text of the last NAME or STRING event
+    String string() {
+        return text.toString();
+    }
+
+    //Integer when the last NUMBER fits in an int, Double otherwise
+    Object number() {
+        return number;
+    }
+
+    Event next() throws IOException {
+        if (done) return Event.END;
+
+        char c = skipWhitespace();
+        if (depth > 0) {
+            boolean object = stack[depth - 1];
+            boolean atSeparator = !object || expectName;
+            if (atSeparator && c == (object ? '}' : ']')) {
+                position++;
+                depth--;
+                return ended(object ? Event.END_OBJECT : Event.END_ARRAY);
+            }
+
+            if (atSeparator && !first) {
+                if (c != ',') throw error("Expected ',' or '" + (object ? '}' : ']') + "'");
+                position++;
+                c = skipWhitespace();
+            }
+
+            if (object && expectName) {
+                if (c != '"') throw error("Expected property name");
+                position++;
+                readString();
+                if (skipWhitespace() != ':') throw error("Expected ':' after property name");
+                position++;
+                expectName = false;
+                first = false;
+                return Event.NAME;
+            }
+        }
+
+        if (c == 0) throw error("Unexpected end of document");
+        position++;
+        switch (c) {
+            case '{' : return open(true, Event.START_OBJECT);
+            case '[' : return open(false, Event.START_ARRAY);
+            case '"' : readString(); return ended(Event.STRING);
+            case 't' : literal("rue"); return ended(Event.TRUE);
+            case 'f' : literal("alse"); return ended(Event.FALSE);
+            case 'n' : literal("ull"); return ended(Event.NULL);
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            position--;
+            readNumber();
+            return ended(Event.NUMBER);
+        }
+        throw error("Unexpected '" + c + "'");
+    }
+
+    //Reads the next value whole: objects become maps, arrays lists and numbers ints or decimals
+    Object value(Interpreter interpreter) throws IOException {
+        return value(next(), interpreter);
+    }
+
+    private Object value(Event event, Interpreter interpreter) throws IOException {
+        switch (event) {
+            case STRING : return string(interpreter);
+            case NUMBER : return number;
+            case TRUE   : return true;
+            case FALSE  : return false;
+            case NULL   : return null;
+            case START_OBJECT : {
+                Map<String, Object> object = new LinkedHashMap<>();
+                for (Event next = next(); next != Event.END_OBJECT; next = next()) {
+                    interpreter.chargeArray(1, null);
+                    String name = string(interpreter);
+                    object.put(name, value(interpreter));
+                }
+                return object;
+            }
+            case START_ARRAY : {
+                List<Object> array = new ArrayList<>();
+                boolean numbers = true;
+                for (Event next = next(); next != Event.END_ARRAY; next = next()) {
+                    if (numbers && array.size() == OffHeapArray.THRESHOLD) return numeric(array, next, interpreter);
+                    numbers &= next == Event.NUMBER;
+                    interpreter.chargeArray(1, null);
+                    array.add(value(next, interpreter));
+                }
+                return array;
+            }
+        }
+        throw error("Unexpected end of document");
+    }
+
+    //Large arrays of only numbers are kept off the heap, as ints if they all are and decimals otherwise.
+    //Once an array has THRESHOLD numbers the rest is read unboxed, so no boxed copy of the whole array
+    //is ever built. Anything but a number after that turns it back into an ordinary array.
+    private List<Object> numeric(List<Object> head, Event next, Interpreter interpreter) throws IOException {
+        int count = head.size();
+        int[] ints = new int[count * 2];
+        double[] decimals = null;
+        for (int i = 0; i < count; i++) {
+            Object element = head.get(i);
+            if (element instanceof Double && decimals == null) decimals = decimals(ints, i, ints.length);
+            if (decimals != null) decimals[i] = ((Number) element).doubleValue();
+            else ints[i] = (Integer) element;
+        }
+
+        for (; next != Event.END_ARRAY; next = next()) {
+            interpreter.chargeArray(1, null);
+            if (next != Event.NUMBER) {
+                List<Object> array = boxed(ints, decimals, count);
+                array.add(value(next, interpreter));
+                for (next = next(); next != Event.END_ARRAY; next = next()) {
+                    interpreter.chargeArray(1, null);
+                    array.add(value(next, interpreter));
+                }
+                return array;
+            }
+
+            if (number instanceof Double && decimals == null) {
+                decimals = decimals(ints, count, ints.length);
+                ints = null;
+            }
+            if (decimals != null) {
+                if (count == decimals.length) decimals = Arrays.copyOf(decimals, count * 2);
+                decimals[count++] = ((Number) number).doubleValue();
+            } else {
+                if (count == ints.length) ints = Arrays.copyOf(ints, count * 2);
+                ints[count++] = (Integer) number;
+            }
+        }
+
+        return decimals != null ? OffHeapArray.of(decimals, count) : OffHeapArray.of(ints, count);
+    }
+
+    private String string(Interpreter interpreter) {
+        interpreter.chargeString(text.length(), null);
+        return text.toString();
+    }
+
+    private static double[] decimals(int[] ints, int count, int capacity) {
+        double[] decimals = new double[capacity];
+        for (int i = 0; i < count; i++) {
+            decimals[i] = ints[i];
+        }
+        return decimals;
+    }
+
+    private static List<Object> boxed(int[] ints, double[] decimals, int count) {
+        List<Object> array = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            array.add(decimals != null ? (Object) decimals[i] : (Object) ints[i]);
+        }
+        return array;
+    }
+
+    private Event open(boolean object, Event event) {
+        if (depth == MAX_DEPTH) throw error("Nested more than " + MAX_DEPTH + " deep");
+        if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = object;
+        expectName = object;
+        first = true;
+        return event;
+    }
+
+    //After a value the next token is a separator, or a name when inside an object
+    private Event ended(Event event) throws IOException {
+        first = false;
+        if (depth == 0) {
+            if (skipWhitespace() != 0) throw error("Unexpected text after the document");
+            done = true;
+        } else {
+            expectName = stack[depth - 1];
+        }
+        return event;
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            if (position == limit && !fill()) throw error("Unterminated string");
+
+            //Copy the run of plain characters in one go
+            int start = position;
+            while (position < limit && buffer[position] != '"' && buffer[position] != '\\') position++;
+            text.append(buffer, start, position - start);
+            if (position == limit) continue;
+
+            char c = buffer[position++];
+            if (c == '"') return;
+
+            if (position == limit && !fill()) throw error("Unterminated string");
+            char escape = buffer[position++];
+            switch (escape) {
+                case '"'  : text.append('"'); break;
+                case '\\' : text.append('\\'); break;
+                case '/'  : text.append('/'); break;
+                case 'b'  : text.append('\b'); break;
+                case 'f'  : text.append('\f'); break;
+                case 'n'  : text.append('\n'); break;
+                case 'r'  : text.append('\r'); break;
+                case 't'  : text.append('\t'); break;
+                case 'u'  : {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        if (position == limit && !fill()) throw error("Unterminated string");
+                        int digit = Character.digit(buffer[position++], 16);
+                        if (digit < 0) throw error("Invalid unicode escape");
+                        code = code * 16 + digit;
+                    }
+                    text.append((char) code);
+                    break;
+                }
+                default   : throw error("Invalid escape '\\" + escape + "'");
+            }
+        }
+    }
+
+    private void readNumber() throws IOException {
+        text.setLength(0);
+        boolean integer = true;
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if ((c >= '0' && c <= '9') || c == '-') {
+                text.append(c);
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+') {
+                text.append(c);
+                integer = false;
+            } else {
+                break;
+            }
+            position++;
+        }
+
+        try {
+            if (integer && text.length() < 19) {
+                long value = Long.parseLong(text.toString());
+                number = value == (int) value ? (Object) (int) value : (Object) (double) value;
+            } else {
+                number = Double.parseDouble(text.toString());
+            }
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    private void literal(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if ((position == limit && !fill()) || buffer[position++] != rest.charAt(i)) throw error("Invalid literal");
+        }
+    }
+
+    //Next character that is not whitespace without consuming it, 0 at the end of the input
+    private char skipWhitespace() throws IOException {
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            position++;
+        }
+        return 0;
+    }
+
+    private boolean fill() throws IOException {
+        if (reader == null) return false;
+
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private RuntimeError error(String message) {
+        return new RuntimeError(null, "Invalid JSON: " + message + ".");
+    }
+}
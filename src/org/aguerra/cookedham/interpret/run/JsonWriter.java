@@ -0,0 +1,85 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//Text of toJson(value). Objects and arrays are written straight into one StringBuilder. The containers
+//being written are tracked by identity, so a value that holds itself is refused instead of recursing
+//until the stack runs out, and so is one nested deeper than the reader would accept back.
+final class JsonWriter {
+    private JsonWriter() {}
+
+    static String write(Object value) {
+        StringBuilder json = new StringBuilder();
+        write(value, json, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return json.toString();
+    }
+
+    private static void write(Object value, StringBuilder json, Set<Object> open) {
+        if (value == null || value instanceof Boolean || value instanceof Integer) {
+            json.append(value);
+        } else if (value instanceof Double) {
+            double number = (Double) value;
+            if (Double.isNaN(number) || Double.isInfinite(number)) throw new RuntimeError(null, "Cannot write " + number + " as JSON.");
+            json.append(number);
+        } else if (Strings.isString(value) || value instanceof Character) {
+            string(value.toString(), json);
+        } else if (value instanceof Map) {
+            enter(value, open);
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) json.append(',');
+                first = false;
+                string(entry.getKey().toString(), json);
+                json.append(':');
+                write(entry.getValue(), json, open);
+            }
+            json.append('}');
+            open.remove(value);
+        } else if (value instanceof List) {
+            List<?> array = (List<?>) value;
+            enter(value, open);
+            json.append('[');
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) json.append(',');
+                write(array.get(i), json, open);
+            }
+            json.append(']');
+            open.remove(value);
+        } else {
+            throw new RuntimeError(null, "Cannot write a value of type " + value.getClass().getSimpleName() + " as JSON.");
+        }
+    }
+
+    private static void enter(Object container, Set<Object> open) {
+        if (!open.add(container)) throw new RuntimeError(null, "Cannot write a value that contains itself as JSON.");
+        if (open.size() > JsonReader.MAX_DEPTH) {
+            throw new RuntimeError(null, "Cannot write JSON nested more than " + JsonReader.MAX_DEPTH + " deep.");
+        }
+    }
+
+    private static void string(String text, StringBuilder json) {
+        json.append('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) continue;
+
+            json.append(text, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"'  : json.append("\\\""); break;
+                case '\\' : json.append("\\\\"); break;
+                case '\n' : json.append("\\n"); break;
+                case '\r' : json.append("\\r"); break;
+                case '\t' : json.append("\\t"); break;
+                default   : json.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        json.append(text, start, text.length()).append('"');
+    }
+}
@@ -0,0 +1,63 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+//awk style filter. The script's top level runs once, then its record(line) function is called for
+//every line of input. A value returned by record is written out as a line of its own, and an end()
+//function, if the script has one, runs after the last line.
+public final class LineFilter {
+    public static final String RECORD = "record";
+    public static final String END = "end";
+
+    private LineFilter() {}
+
+    //Returns the exit code: 0, or 70 when the script stopped on a runtime error
+    public static int run(Program program, ReadableByteChannel input, WritableByteChannel output, PrintWriter err)
+            throws IOException {
+        //Flushed when the buffer fills and when the filter ends, never per line
+        OutputSink out = new OutputSink(Channels.newWriter(output, StandardCharsets.UTF_8.newEncoder(), -1),
+                OutputSink.FlushPolicy.ON_EXIT);
+        Interpreter interpreter = new Interpreter(out, err);
+        interpreter.setScript(program.getPath());
+
+        try {
+            interpreter.interpret(program.getStatements());
+            if (interpreter.hadRuntimeError()) return 70;
+
+            Callable record = function(interpreter, RECORD, 1);
+            if (record == null) {
+                err.println("Filter scripts must define a function " + RECORD + "(line).");
+                err.flush();
+                return 70;
+            }
+
+            LineReader reader = new LineReader(input);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Object value = record.call(interpreter, Collections.singletonList(line));
+                if (value != null) interpreter.println(value);
+            }
+
+            Callable end = function(interpreter, END, 0);
+            if (end != null) end.call(interpreter, Collections.emptyList());
+            return 0;
+        } catch (RuntimeError error) {
+            interpreter.runtimeError(error);
+            return 70;
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static Callable function(Interpreter interpreter, String name, int arity) {
+        Object value = interpreter.globals.lookup(name);
+        if (value instanceof Callable && ((Callable) value).arity() == arity) return (Callable) value;
+        return null;
+    }
+}
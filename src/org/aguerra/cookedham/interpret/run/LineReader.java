@@ -0,0 +1,87 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+//Reads UTF-8 lines from a channel through one large direct buffer, so file channels read straight
+//into it without an extra copy. Lines are cut at '\n' on the raw bytes and only the line itself is
+//decoded, so there is no Reader or per-character work in between.
+final class LineReader {
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    //Bytes of the current line, copied out of the direct buffer for decoding
+    private byte[] line = new byte[256];
+    private boolean endOfInput = false;
+
+    LineReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    //Next line without its line ending, or null at the end of the input
+    String readLine() throws IOException {
+        int scanned = buffer.position();
+        while (true) {
+            for (int i = scanned; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') return take(i, i + 1);
+            }
+
+            if (endOfInput) {
+                return buffer.hasRemaining() ? take(buffer.limit(), buffer.limit()) : null;
+            }
+
+            scanned = buffer.remaining();
+            fill();
+        }
+    }
+
+    //Everything left in the input as one string
+    String readRest() throws IOException {
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        while (true) {
+            int length = buffer.remaining();
+            if (line.length < length) line = new byte[length];
+            buffer.get(line, 0, length);
+            rest.write(line, 0, length);
+
+            if (endOfInput) return new String(rest.toByteArray(), StandardCharsets.UTF_8);
+            fill();
+        }
+    }
+
+    boolean atEnd() throws IOException {
+        while (!buffer.hasRemaining() && !endOfInput) {
+            fill();
+        }
+        return !buffer.hasRemaining();
+    }
+
+    private String take(int end, int next) {
+        int length = end - buffer.position();
+        if (length > 0 && buffer.get(end - 1) == '\r') length--;
+
+        if (line.length < length) line = new byte[Math.max(length, line.length * 2)];
+        buffer.get(line, 0, length);
+        buffer.position(next);
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    //Moves the unread part to the front and reads more after it, growing the buffer for long lines
+    private void fill() throws IOException {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+
+        if (channel.read(buffer) == -1) endOfInput = true;
+        buffer.flip();
+    }
+}
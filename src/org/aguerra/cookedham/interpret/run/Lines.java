@@ -0,0 +1,73 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//Lazy sequence returned by lines(path). Every loop over it opens the file and reads one line at a
+//time, so files far larger than memory can be processed. The file is closed after the last line, or
+//when a loop stops early.
+class Lines implements Iterable<Object> {
+    private final Path path;
+
+    Lines(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        try {
+            return new LineIterator(FileChannel.open(path, StandardOpenOption.READ));
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Cannot open " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "lines(" + path + ")";
+    }
+
+    private static class LineIterator implements Iterator<Object>, Closeable {
+        private final FileChannel channel;
+        private final LineReader reader;
+        private String next;
+
+        LineIterator(FileChannel channel) {
+            this.channel = channel;
+            this.reader = new LineReader(channel);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Object next() {
+            if (next == null) throw new NoSuchElementException();
+            String line = next;
+            advance();
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void advance() {
+            try {
+                next = reader.readLine();
+                if (next == null) channel.close();
+            } catch (IOException e) {
+                throw new RuntimeError(null, "Cannot read file: " + e.getMessage());
+            }
+        }
+    }
+}
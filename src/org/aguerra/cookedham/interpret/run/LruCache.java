@@ -0,0 +1,52 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Fixed size map that drops the least recently used entry once it is full. Safe to share between threads.
+//Lookups go straight to a ConcurrentHashMap and only stamp the entry with the time it was used, so
+//readers never wait on each other. Adding past the capacity scans for the oldest stamp to drop, which
+//is cheap for the few hundred entries these caches hold next to compiling what they keep.
+public class LruCache<K, V> {
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int capacity;
+
+    public LruCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) return null;
+        entry.used = System.nanoTime();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        entries.put(key, new Entry<>(value));
+        while (entries.size() > capacity) {
+            evictEldest();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evictEldest() {
+        Map.Entry<K, Entry<V>> eldest = null;
+        for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+            if (eldest == null || entry.getValue().used - eldest.getValue().used < 0) eldest = entry;
+        }
+        if (eldest != null) entries.remove(eldest.getKey(), eldest.getValue());
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        volatile long used = System.nanoTime();
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+}
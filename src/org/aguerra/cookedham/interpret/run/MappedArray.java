@@ -0,0 +1,39 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Array whose elements live in a memory-mapped file of little-endian ints or decimals, returned by
+//mapArray(path, type). Reads and writes go straight to the mapping, so files larger than the heap
+//can be scanned and updated without copying them in.
+final class MappedArray extends NumericArray {
+    private MappedArray(FileChannel channel, boolean decimal, boolean writable, int size) throws IOException {
+        super(decimal, size, writable);
+
+        long bytes = (long) size << elementShift;
+        chunks = new ByteBuffer[chunkCount(bytes)];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(mode, start, Math.min(CHUNK_BYTES, bytes - start)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    //Maps the file read-write when it can be written and read-only otherwise. The mapping outlives
+    //the channel, so the channel is closed right away.
+    static MappedArray map(Path path, boolean decimal) throws IOException {
+        boolean writable = Files.isWritable(path);
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            long elements = channel.size() >> (decimal ? 3 : 2);
+            if (elements > Integer.MAX_VALUE) throw new IOException("File has more elements than an array can index.");
+            return new MappedArray(channel, decimal, writable, (int) elements);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.lex.Token;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Namespace of an imported script. Importing only names the module; its top level runs the first time
+//one of its members is used, on an interpreter of its own, and the globals it defines become the
+//namespace. Each script is compiled once per process and recompiled only when its file changes.
+//
+//Loads in progress are tracked for the whole process: which thread is running each module's top level
+//and which module each waiting thread waits for. A thread that would wait for a load that is itself
+//waiting on the thread, directly or through other loads, has found a circular import and reports it.
+final class Module {
+    //Guards loaders and waiting, and is notified whenever a load ends
+    private static final Object loads = new Object();
+    private static final Map<Path, Thread> loaders = new HashMap<>();
+    private static final Map<Thread, Path> waiting = new HashMap<>();
+    private static final Map<Path, Compiled> compiled = new ConcurrentHashMap<>();
+
+    final Path path;
+    private volatile Environment namespace;
+
+    Module(Path path) {
+        this.path = path;
+    }
+
+    //Member of the module, loading it first if this is the first use
+    Object get(Interpreter interpreter, Token name) {
+        return namespace(interpreter, name).get(name);
+    }
+
+    private Environment namespace(Interpreter interpreter, Token token) {
+        Environment loaded = namespace;
+        if (loaded != null) return loaded;
+
+        Thread current = Thread.currentThread();
+        synchronized (loads) {
+            while (namespace == null && loaders.containsKey(path)) {
+                if (leadsBackTo(current, path)) throw new RuntimeError(token, "Circular import of '" + path + "'.");
+
+                waiting.put(current, path);
+                try {
+                    loads.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeError(token, "Interrupted while loading module '" + path + "'.");
+                } finally {
+                    waiting.remove(current);
+                }
+            }
+            if (namespace != null) return namespace;
+            loaders.put(path, current);
+        }
+
+        try {
+            Interpreter module = interpreter.moduleInterpreter(path.getParent());
+            module.executeModule(program(token).getStatements());
+            namespace = module.globals;
+            return namespace;
+        } finally {
+            //A failed load leaves the namespace unset, and the next thread to wake tries it again
+            synchronized (loads) {
+                loaders.remove(path);
+                loads.notifyAll();
+            }
+        }
+    }
+
+    //Whether the thread loading path is the given thread, or waits for a module whose loader is
+    private static boolean leadsBackTo(Thread thread, Path path) {
+        Thread loader = loaders.get(path);
+        while (loader != null) {
+            if (loader == thread) return true;
+            Path awaited = waiting.get(loader);
+            loader = awaited == null ? null : loaders.get(awaited);
+        }
+        return false;
+    }
+
+    private Program program(Token token) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            Compiled cached = compiled.get(path);
+            if (cached != null && cached.modified == modified && cached.size == attributes.size()) return cached.program;
+
+            Program program = ProgramCache.load(path.toFile());
+            compiled.put(path, new Compiled(program, modified, attributes.size()));
+            return program;
+        } catch (NoSuchFileException e) {
+            throw new RuntimeError(token, "Cannot find module '" + path + "'.");
+        } catch (IOException e) {
+            throw new RuntimeError(token, "Cannot read module '" + path + "': " + e.getMessage());
+        } catch (CompileError e) {
+            throw new RuntimeError(token, "Module '" + path + "' does not compile:\n" + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<module " + path + ">";
+    }
+
+    private static final class Compiled {
+        final Program program;
+        final long modified;
+        final long size;
+
+        Compiled(Program program, long modified, long size) {
+            this.program = program;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.aguerra.cookedham.interpret.run;
+
+//Built-in function implemented in Java. Pure natives have no observable effect besides their
+//return value, which lets the parallel array natives run them from several threads at once.
+abstract class Native implements Callable {
+    private final int arity;
+    //Trailing arguments that may be left out, which call() sees as a shorter argument list
+    private final int optional;
+    private final boolean pure;
+
+    Native(int arity, int optional, boolean pure) {
+        this.arity = arity;
+        this.optional = optional;
+        this.pure = pure;
+    }
+
+    Native(int arity, boolean pure) {
+        this(arity, 0, pure);
+    }
+
+    Native(int arity) {
+        this(arity, true);
+    }
+
+    boolean accepts(int count) {
+        return count >= arity && count <= arity + optional;
+    }
+
+    boolean isPure() {
+        return pure;
+    }
+
+    //Whether a parallel loop body may call it. Besides pure natives that is the ones that only change
+    //shared state atomically or write output, which override this.
+    boolean isParallelSafe() {
+        return pure;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
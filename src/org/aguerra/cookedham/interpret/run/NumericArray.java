@@ -0,0 +1,125 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+//Array of ints or decimals stored in byte buffers outside the Java heap instead of as boxed values
+//in an ArrayList. A buffer holds at most 2GB, so the elements are split across chunks of CHUNK_BYTES
+//and an index picks its chunk with a shift.
+abstract class NumericArray extends AbstractList<Object> implements RandomAccess {
+    static final int CHUNK_SHIFT = 30;
+    static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+
+    final boolean decimal;
+    final int elementShift;
+    final int size;
+    private final boolean writable;
+    //Null once the array has been released, which only happens to off-heap arrays that never escaped
+    //the scope that declared them, so no other code still holds the array.
+    volatile ByteBuffer[] chunks;
+
+    NumericArray(boolean decimal, int size, boolean writable) {
+        this.decimal = decimal;
+        this.elementShift = decimal ? 3 : 2;
+        this.size = size;
+        this.writable = writable;
+    }
+
+    static int chunkCount(long bytes) {
+        return (int) ((bytes + CHUNK_BYTES - 1) >> CHUNK_SHIFT);
+    }
+
+    @Override
+    public Object get(int index) {
+        long offset = offset(index);
+        ByteBuffer chunk = chunks()[(int) (offset >> CHUNK_SHIFT)];
+        int position = (int) (offset & (CHUNK_BYTES - 1));
+        return decimal ? (Object) chunk.getDouble(position) : (Object) chunk.getInt(position);
+    }
+
+    @Override
+    public Object set(int index, Object value) {
+        if (!writable) throw new RuntimeError(null, "Array is read only.");
+
+        Object previous = get(index);
+        long offset = offset(index);
+        ByteBuffer chunk = chunks()[(int) (offset >> CHUNK_SHIFT)];
+        int position = (int) (offset & (CHUNK_BYTES - 1));
+        if (decimal) {
+            if (!(value instanceof Integer) && !(value instanceof Double)) throw new RuntimeError(null, "Expected decimal for decimal array.");
+            chunk.putDouble(position, ((Number) value).doubleValue());
+        } else {
+            if (!(value instanceof Integer)) throw new RuntimeError(null, "Expected int for int array.");
+            chunk.putInt(position, (Integer) value);
+        }
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    //Bulk copies of count elements starting at index, split where they cross from one chunk to the next
+    void getInts(int index, int[] into, int count) {
+        for (int done = 0; done < count; ) {
+            int length = run(index + done, count - done);
+            slice(index + done).asIntBuffer().get(into, done, length);
+            done += length;
+        }
+    }
+
+    void getDecimals(int index, double[] into, int count) {
+        for (int done = 0; done < count; ) {
+            int length = run(index + done, count - done);
+            slice(index + done).asDoubleBuffer().get(into, done, length);
+            done += length;
+        }
+    }
+
+    void putInts(int index, int[] from, int count) {
+        if (!writable) throw new RuntimeError(null, "Array is read only.");
+        for (int done = 0; done < count; ) {
+            int length = run(index + done, count - done);
+            slice(index + done).asIntBuffer().put(from, done, length);
+            done += length;
+        }
+    }
+
+    void putDecimals(int index, double[] from, int count) {
+        if (!writable) throw new RuntimeError(null, "Array is read only.");
+        for (int done = 0; done < count; ) {
+            int length = run(index + done, count - done);
+            slice(index + done).asDoubleBuffer().put(from, done, length);
+            done += length;
+        }
+    }
+
+    //Elements from index to the end of its chunk, at most count
+    private int run(int index, int count) {
+        long offset = offset(index);
+        long left = (CHUNK_BYTES - (offset & (CHUNK_BYTES - 1))) >> elementShift;
+        return (int) Math.min(count, left);
+    }
+
+    //Chunk holding index, positioned at it and keeping the chunk's byte order
+    private ByteBuffer slice(int index) {
+        long offset = offset(index);
+        ByteBuffer chunk = chunks()[(int) (offset >> CHUNK_SHIFT)].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        chunk.position((int) (offset & (CHUNK_BYTES - 1)));
+        return chunk;
+    }
+
+    private ByteBuffer[] chunks() {
+        ByteBuffer[] chunks = this.chunks;
+        if (chunks == null) throw new RuntimeError(null, "Array was released when its scope ended.");
+        return chunks;
+    }
+
+    private long offset(int index) {
+        if (index < 0 || index >= size) throw new RuntimeError(null, "Index outside array bounds.");
+        return (long) index << elementShift;
+    }
+}
@@ -0,0 +1,367 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//sum, min, max, dot, add, scale and axpy over arrays of numbers, run in Java instead of as script
+//loops. Arrays are processed in blocks of BLOCK elements: each block is copied into an int[] or
+//double[], in bulk for off-heap and mapped arrays, and the arithmetic runs as plain loops over those.
+//The JIT can unroll these, and vectorizes the element-wise ones over int[], but does not vectorize
+//reductions over doubles or min and max. An array holding any decimal is worked on as decimals, and
+//results are decimal unless every input is int. Int sum and dot are added up in a long and fail
+//instead of wrapping around when the result does not fit in an int.
+final class NumericNatives {
+    private static final int BLOCK = 4096;
+
+    private NumericNatives() {}
+
+    static void define(Environment globals) {
+        globals.define("sum", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Numbers a = numbers(arguments.get(0), "sum");
+                if (!a.decimal) {
+                    int[] block = new int[BLOCK];
+                    long total = 0;
+                    for (int from = 0; from < a.size; from += BLOCK) {
+                        int count = a.ints(from, block);
+                        for (int i = 0; i < count; i++) {
+                            total += block[i];
+                        }
+                    }
+                    return fit(total, "sum");
+                }
+
+                double[] block = new double[BLOCK];
+                double total = 0;
+                for (int from = 0; from < a.size; from += BLOCK) {
+                    int count = a.decimals(from, block);
+                    for (int i = 0; i < count; i++) {
+                        total += block[i];
+                    }
+                }
+                return total;
+            }
+        });
+        globals.define("min", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return extreme(numbers(arguments.get(0), "min"), "min", true);
+            }
+        });
+        globals.define("max", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return extreme(numbers(arguments.get(0), "max"), "max", false);
+            }
+        });
+        globals.define("dot", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Numbers a = numbers(arguments.get(0), "dot");
+                Numbers b = numbers(arguments.get(1), "dot");
+                sameSize(a, b, "dot");
+
+                if (!a.decimal && !b.decimal) {
+                    int[] x = new int[BLOCK];
+                    int[] y = new int[BLOCK];
+                    long total = 0;
+                    try {
+                        for (int from = 0; from < a.size; from += BLOCK) {
+                            int count = a.ints(from, x);
+                            b.ints(from, y);
+                            for (int i = 0; i < count; i++) {
+                                total = Math.addExact(total, (long) x[i] * y[i]);
+                            }
+                        }
+                    } catch (ArithmeticException e) {
+                        throw overflow("dot");
+                    }
+                    return fit(total, "dot");
+                }
+
+                double[] x = new double[BLOCK];
+                double[] y = new double[BLOCK];
+                double total = 0;
+                for (int from = 0; from < a.size; from += BLOCK) {
+                    int count = a.decimals(from, x);
+                    b.decimals(from, y);
+                    for (int i = 0; i < count; i++) {
+                        total += x[i] * y[i];
+                    }
+                }
+                return total;
+            }
+        });
+        //add(a, b), a new array of the sums of the elements at each index
+        globals.define("add", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Numbers a = numbers(arguments.get(0), "add");
+                Numbers b = numbers(arguments.get(1), "add");
+                sameSize(a, b, "add");
+                interpreter.chargeArray(a.size, null);
+
+                if (!a.decimal && !b.decimal) {
+                    Result result = new Result(a.size, false);
+                    int[] x = new int[BLOCK];
+                    int[] y = new int[BLOCK];
+                    for (int from = 0; from < a.size; from += BLOCK) {
+                        int count = a.ints(from, x);
+                        b.ints(from, y);
+                        for (int i = 0; i < count; i++) {
+                            x[i] += y[i];
+                        }
+                        result.ints(from, x, count);
+                    }
+                    return result.array;
+                }
+
+                Result result = new Result(a.size, true);
+                double[] x = new double[BLOCK];
+                double[] y = new double[BLOCK];
+                for (int from = 0; from < a.size; from += BLOCK) {
+                    int count = a.decimals(from, x);
+                    b.decimals(from, y);
+                    for (int i = 0; i < count; i++) {
+                        x[i] += y[i];
+                    }
+                    result.decimals(from, x, count);
+                }
+                return result.array;
+            }
+        });
+        //scale(a, k), a new array of every element times k
+        globals.define("scale", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Numbers a = numbers(arguments.get(0), "scale");
+                Object k = number(arguments.get(1), "scale");
+                interpreter.chargeArray(a.size, null);
+
+                if (!a.decimal && k instanceof Integer) {
+                    int factor = (Integer) k;
+                    Result result = new Result(a.size, false);
+                    int[] x = new int[BLOCK];
+                    for (int from = 0; from < a.size; from += BLOCK) {
+                        int count = a.ints(from, x);
+                        for (int i = 0; i < count; i++) {
+                            x[i] *= factor;
+                        }
+                        result.ints(from, x, count);
+                    }
+                    return result.array;
+                }
+
+                double factor = ((Number) k).doubleValue();
+                Result result = new Result(a.size, true);
+                double[] x = new double[BLOCK];
+                for (int from = 0; from < a.size; from += BLOCK) {
+                    int count = a.decimals(from, x);
+                    for (int i = 0; i < count; i++) {
+                        x[i] *= factor;
+                    }
+                    result.decimals(from, x, count);
+                }
+                return result.array;
+            }
+        });
+        //axpy(alpha, x, y) sets y to alpha * x + y in place and returns it
+        globals.define("axpy", new Native(3, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object alpha = number(arguments.get(0), "axpy");
+                Numbers x = numbers(arguments.get(1), "axpy");
+                Numbers y = numbers(arguments.get(2), "axpy");
+                sameSize(x, y, "axpy");
+
+                boolean decimal = x.decimal || y.decimal || alpha instanceof Double;
+                if (decimal && y.list instanceof NumericArray && !((NumericArray) y.list).decimal) {
+                    throw new RuntimeError(null, "Expected int alpha and x for axpy into an int array.");
+                }
+
+                if (!decimal) {
+                    int a = (Integer) alpha;
+                    int[] xs = new int[BLOCK];
+                    int[] ys = new int[BLOCK];
+                    for (int from = 0; from < y.size; from += BLOCK) {
+                        int count = x.ints(from, xs);
+                        y.ints(from, ys);
+                        for (int i = 0; i < count; i++) {
+                            ys[i] += a * xs[i];
+                        }
+                        y.putInts(from, ys, count);
+                    }
+                    return y.list;
+                }
+
+                double a = ((Number) alpha).doubleValue();
+                double[] xs = new double[BLOCK];
+                double[] ys = new double[BLOCK];
+                for (int from = 0; from < y.size; from += BLOCK) {
+                    int count = x.decimals(from, xs);
+                    y.decimals(from, ys);
+                    for (int i = 0; i < count; i++) {
+                        ys[i] += a * xs[i];
+                    }
+                    y.putDecimals(from, ys, count);
+                }
+                return y.list;
+            }
+        });
+    }
+
+    private static Object extreme(Numbers a, String name, boolean min) {
+        if (a.size == 0) throw new RuntimeError(null, "Expected non-empty array for " + name + ".");
+
+        if (!a.decimal) {
+            int[] block = new int[BLOCK];
+            int best = min ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+            for (int from = 0; from < a.size; from += BLOCK) {
+                int count = a.ints(from, block);
+                for (int i = 0; i < count; i++) {
+                    best = min ? Math.min(best, block[i]) : Math.max(best, block[i]);
+                }
+            }
+            return best;
+        }
+
+        double[] block = new double[BLOCK];
+        double best = min ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        for (int from = 0; from < a.size; from += BLOCK) {
+            int count = a.decimals(from, block);
+            for (int i = 0; i < count; i++) {
+                best = min ? Math.min(best, block[i]) : Math.max(best, block[i]);
+            }
+        }
+        return best;
+    }
+
+    private static int fit(long total, String name) {
+        if (total != (int) total) throw overflow(name);
+        return (int) total;
+    }
+
+    private static RuntimeError overflow(String name) {
+        return new RuntimeError(null, "Integer overflow in " + name + ".");
+    }
+
+    private static Numbers numbers(Object value, String name) {
+        if (value instanceof NumericArray) return new Numbers((NumericArray) value, ((NumericArray) value).decimal);
+        if (!(value instanceof List)) throw new RuntimeError(null, "Expected array of numbers for " + name + ".");
+
+        List<?> list = (List<?>) value;
+        boolean decimal = false;
+        for (Object element : list) {
+            if (element instanceof Double) decimal = true;
+            else if (!(element instanceof Integer)) throw new RuntimeError(null, "Expected array of numbers for " + name + ".");
+        }
+        return new Numbers(list, decimal);
+    }
+
+    private static Object number(Object value, String name) {
+        if (!(value instanceof Integer) && !(value instanceof Double)) throw new RuntimeError(null, "Expected number for " + name + ".");
+        return value;
+    }
+
+    private static void sameSize(Numbers a, Numbers b, String name) {
+        if (a.size != b.size) throw new RuntimeError(null, "Expected arrays of the same size for " + name + ".");
+    }
+
+    //An array of numbers read and written a block at a time
+    private static final class Numbers {
+        final List<?> list;
+        final boolean decimal;
+        final int size;
+        //Ints of an int array read as decimals, allocated on first use
+        private int[] scratch;
+
+        Numbers(List<?> list, boolean decimal) {
+            this.list = list;
+            this.decimal = decimal;
+            this.size = list.size();
+        }
+
+        //Copies the block starting at from and returns its length. Only called on int arrays.
+        int ints(int from, int[] block) {
+            int count = Math.min(BLOCK, size - from);
+            if (list instanceof NumericArray) {
+                ((NumericArray) list).getInts(from, block, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    block[i] = (Integer) list.get(from + i);
+                }
+            }
+            return count;
+        }
+
+        int decimals(int from, double[] block) {
+            int count = Math.min(BLOCK, size - from);
+            if (list instanceof NumericArray && decimal) {
+                ((NumericArray) list).getDecimals(from, block, count);
+            } else if (list instanceof NumericArray) {
+                if (scratch == null) scratch = new int[BLOCK];
+                ((NumericArray) list).getInts(from, scratch, count);
+                for (int i = 0; i < count; i++) {
+                    block[i] = scratch[i];
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    block[i] = ((Number) list.get(from + i)).doubleValue();
+                }
+            }
+            return count;
+        }
+
+        @SuppressWarnings("unchecked")
+        void putInts(int from, int[] block, int count) {
+            if (list instanceof NumericArray) {
+                ((NumericArray) list).putInts(from, block, count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                ((List<Object>) list).set(from + i, block[i]);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void putDecimals(int from, double[] block, int count) {
+            if (list instanceof NumericArray) {
+                ((NumericArray) list).putDecimals(from, block, count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                ((List<Object>) list).set(from + i, block[i]);
+            }
+        }
+    }
+
+    //New array filled a block at a time, off the heap when it is large enough
+    private static final class Result {
+        final List<Object> array;
+
+        Result(int size, boolean decimal) {
+            array = size >= OffHeapArray.THRESHOLD ? OffHeapArray.allocate(size, decimal) : new ArrayList<>(size);
+        }
+
+        void ints(int from, int[] block, int count) {
+            if (array instanceof OffHeapArray) {
+                ((OffHeapArray) array).putInts(from, block, count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                array.add(block[i]);
+            }
+        }
+
+        void decimals(int from, double[] block, int count) {
+            if (array instanceof OffHeapArray) {
+                ((OffHeapArray) array).putDecimals(from, block, count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                array.add(block[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+//Array of ints or decimals in direct buffers, so tens of millions of numbers take 4 or 8 bytes each
+//and give the garbage collector nothing to trace. allocate(size, type) returns one for sizes of at
+//least THRESHOLD, and an offheap array declaration always makes one that its scope owns.
+//
+//When the owning scope ends its memory is freed right away, unless the array escaped: the
+//interpreter marks an array escaped whenever a reference to it is kept anywhere the scope does not
+//control, such as another variable, an array element, a return value, a yield, a spawned task or a
+//native that is not pure. An escaped array stays usable and its memory is left to the collector.
+final class OffHeapArray extends NumericArray {
+    //Smaller arrays stay ArrayLists, where boxing costs less than the trip through a buffer
+    static final int THRESHOLD = 1 << 16;
+
+    //Unsafe.invokeCleaner, which frees a direct buffer's memory at once, or null where the JDK lacks it
+    private static final MethodHandle FREE = freeHandle();
+
+    //Set once a scope has taken the array, so a second offheap declaration copies it instead
+    private boolean owned = false;
+    private volatile boolean escaped = false;
+
+    private OffHeapArray(boolean decimal, int size) {
+        super(decimal, size, true);
+
+        long bytes = (long) size << elementShift;
+        chunks = new ByteBuffer[chunkCount(bytes)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = ByteBuffer.allocateDirect((int) Math.min(CHUNK_BYTES, bytes - start)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    //Elements start at zero, since direct buffers are zeroed when allocated
+    static OffHeapArray allocate(int size, boolean decimal) {
+        if (size < 0) throw new RuntimeError(null, "Array size cannot be negative.");
+        try {
+            return new OffHeapArray(decimal, size);
+        } catch (OutOfMemoryError e) {
+            throw new RuntimeError(null, "Not enough memory for an off-heap array of " + size + " elements.");
+        }
+    }
+
+    static OffHeapArray copyOf(List<?> values, boolean decimal) {
+        OffHeapArray array = allocate(values.size(), decimal);
+        for (int i = 0; i < values.size(); i++) {
+            array.set(i, values.get(i));
+        }
+        return array;
+    }
+
+    //Bulk copies of the first count numbers
+    static OffHeapArray of(int[] values, int count) {
+        OffHeapArray array = allocate(count, false);
+        array.putInts(0, values, count);
+        return array;
+    }
+
+    static OffHeapArray of(double[] values, int count) {
+        OffHeapArray array = allocate(count, true);
+        array.putDecimals(0, values, count);
+        return array;
+    }
+
+    //Returns the array if no scope owns it yet, and a copy that the caller owns otherwise
+    static OffHeapArray claim(List<?> values, boolean decimal) {
+        if (values instanceof OffHeapArray) {
+            OffHeapArray array = (OffHeapArray) values;
+            synchronized (array) {
+                if (!array.owned && array.decimal == decimal) {
+                    array.owned = true;
+                    return array;
+                }
+            }
+        }
+
+        OffHeapArray array = copyOf(values, decimal);
+        array.owned = true;
+        return array;
+    }
+
+    static void escape(Object value) {
+        if (value instanceof OffHeapArray) ((OffHeapArray) value).escaped = true;
+    }
+
+    //Called when the scope that declared the array ends. Nothing outside the scope can reach an array
+    //that never escaped, so its buffers are freed now.
+    void release() {
+        if (escaped) return;
+
+        ByteBuffer[] released = chunks;
+        chunks = null;
+        if (released == null || FREE == null) return;
+        for (ByteBuffer chunk : released) {
+            try {
+                FREE.invokeExact(chunk);
+            } catch (Throwable e) {
+                //The collector frees the buffer once it is unreachable
+            }
+        }
+    }
+
+    private static MethodHandle freeHandle() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            MethodHandle invokeCleaner = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner",
+                    MethodType.methodType(void.class, ByteBuffer.class));
+            return invokeCleaner.bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//Buffered destination of print, display and displayln. Output collects in a large buffer and only
+//reaches the underlying writer when the buffer fills or the flush policy asks for it, so printing a
+//line is a copy into the buffer instead of a synchronized, flushed write. Numbers are written digit
+//by digit straight into the buffer. Like PrintWriter, printing never throws; failures are remembered
+//and reported by checkError.
+//
+//A periodic sink schedules a flush PERIOD after the first output that follows a flush, so output
+//reaches the writer at most that late even while the script is busy or blocked between prints.
+public final class OutputSink extends Writer {
+    public enum FlushPolicy {
+        //Only when the buffer is full and when the script ends
+        ON_EXIT,
+        //After every line, for terminals where output should show up as it is printed
+        ON_NEWLINE,
+        //PERIOD after output was first written since the last flush, for streaming to clients
+        PERIODIC
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long PERIOD_NANOS = 100_000_000L;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    //Runs the scheduled flushes of every periodic sink
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cookedham-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Writer target;
+    private final FlushPolicy policy;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int count = 0;
+    //Whether a periodic sink has a flush scheduled that has not run yet
+    private boolean scheduled = false;
+    private boolean trouble = false;
+
+    public OutputSink(Writer target, FlushPolicy policy) {
+        this.target = target;
+        this.policy = policy;
+    }
+
+    //Terminals get each line as it is printed, anything else only when the buffer fills or the script ends
+    static FlushPolicy defaultPolicy() {
+        return System.console() != null ? FlushPolicy.ON_NEWLINE : FlushPolicy.ON_EXIT;
+    }
+
+    public synchronized void print(String text) {
+        try {
+            write(text, 0, text.length());
+        } catch (IOException e) {
+            trouble = true;
+        }
+    }
+
+    public synchronized void print(Object value) {
+        if (value instanceof Integer) {
+            print((int) (Integer) value);
+        } else {
+            print(String.valueOf(value));
+        }
+    }
+
+    public synchronized void print(int value) {
+        print((long) value);
+    }
+
+    public synchronized void print(long value) {
+        try {
+            //20 digits and a sign
+            if (BUFFER_SIZE - count < 20) drain();
+            if (value == Long.MIN_VALUE) {
+                write(Long.toString(value));
+                return;
+            }
+
+            if (value < 0) {
+                buffer[count++] = '-';
+                value = -value;
+            }
+
+            int end = count + digits(value);
+            int position = end;
+            do {
+                buffer[--position] = (char) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            count = end;
+            written();
+        } catch (IOException e) {
+            trouble = true;
+        }
+    }
+
+    public synchronized void println() {
+        print(LINE_SEPARATOR);
+        endOfLine();
+    }
+
+    public synchronized void println(String text) {
+        print(text);
+        println();
+    }
+
+    public synchronized void println(Object value) {
+        print(value);
+        println();
+    }
+
+    public synchronized void println(long value) {
+        print(value);
+        println();
+    }
+
+    @Override
+    public synchronized void write(int c) throws IOException {
+        if (count == BUFFER_SIZE) drain();
+        buffer[count++] = (char) c;
+        written();
+    }
+
+    @Override
+    public synchronized void write(char[] chars, int offset, int length) throws IOException {
+        if (length >= BUFFER_SIZE) {
+            drain();
+            target.write(chars, offset, length);
+        } else {
+            if (length > BUFFER_SIZE - count) drain();
+            System.arraycopy(chars, offset, buffer, count, length);
+            count += length;
+        }
+        written();
+    }
+
+    @Override
+    public synchronized void write(String text, int offset, int length) throws IOException {
+        if (length >= BUFFER_SIZE) {
+            drain();
+            target.write(text, offset, length);
+        } else {
+            if (length > BUFFER_SIZE - count) drain();
+            text.getChars(offset, offset + length, buffer, count);
+            count += length;
+        }
+        written();
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            drain();
+            target.flush();
+        } catch (IOException e) {
+            trouble = true;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        target.close();
+    }
+
+    public synchronized boolean checkError() {
+        flush();
+        return trouble;
+    }
+
+    private void endOfLine() {
+        if (policy == FlushPolicy.ON_NEWLINE) flush();
+    }
+
+    private void written() {
+        if (policy != FlushPolicy.PERIODIC || scheduled) return;
+        scheduled = true;
+        FLUSHER.schedule(this::scheduledFlush, PERIOD_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void scheduledFlush() {
+        scheduled = false;
+        flush();
+    }
+
+    private void drain() throws IOException {
+        if (count == 0) return;
+        target.write(buffer, 0, count);
+        count = 0;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,70 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.lex.Lexer;
+import org.aguerra.cookedham.interpret.parse.Parser;
+import org.aguerra.cookedham.interpret.parse.Statement;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//A lexed and parsed script. Programs never change after compiling, so one program can be executed
+//by any number of ExecutionContexts at the same time.
+public final class Program {
+    private final List<Statement> statements;
+    private final String path;
+
+    Program(List<Statement> statements, String path) {
+        this.statements = Collections.unmodifiableList(statements);
+        this.path = path;
+    }
+
+    public static Program compile(String source) {
+        return compile(source, null);
+    }
+
+    public static Program compile(File file) throws IOException {
+        return compile(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), file.getPath());
+    }
+
+    static Program compile(String source, String path) {
+        Lexer lexer = new Lexer(source);
+        Parser parser = new Parser(lexer.getTokens());
+        List<Statement> statements = parser.parse();
+
+        List<String> errors = new ArrayList<>(lexer.getErrors());
+        errors.addAll(parser.getErrors());
+        if (!errors.isEmpty()) throw new CompileError(errors);
+
+        return new Program(statements, path);
+    }
+
+    //SHA-256 of the source text in hex, used to recognise scripts that were already compiled
+    public static String hash(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    List<Statement> getStatements() {
+        return statements;
+    }
+
+    //File the program was compiled from, or null when compiled from a string
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,90 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.parse.AstSerializer;
+import org.aguerra.cookedham.interpret.parse.Statement;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+//Compiles scripts once and keeps the parsed statements on disk, so later runs of an unchanged script
+//skip lexing and parsing. The cache file starts with the hash of the source it was compiled from and
+//is only used while that hash still matches. Cache files go next to the script (script.ch becomes
+//script.chc) unless the cookedham.cache.dir system property names a directory for them.
+public final class ProgramCache {
+    public static final String EXTENSION = ".chc";
+    private static final String DIRECTORY_PROPERTY = "cookedham.cache.dir";
+
+    private ProgramCache() {}
+
+    public static Program load(File script) throws IOException {
+        String source = new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8);
+        String hash = Program.hash(source);
+        Path cached = cacheFile(script);
+
+        List<Statement> statements = read(cached, hash);
+        if (statements != null) return new Program(statements, script.getPath());
+
+        Program program = Program.compile(source, script.getPath());
+        write(cached, hash, program.getStatements());
+        return program;
+    }
+
+    private static Path cacheFile(File script) {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            String name = script.getName();
+            int extension = name.lastIndexOf('.');
+            if (extension > 0) name = name.substring(0, extension);
+            return script.toPath().resolveSibling(name + EXTENSION);
+        }
+
+        //Scripts from different directories can share a name, so name the file after the full path
+        return new File(directory, Program.hash(script.getAbsolutePath()) + EXTENSION).toPath();
+    }
+
+    //Statements cached for this hash, or null when there is no usable cache file
+    private static List<Statement> read(Path cached, String hash) {
+        if (!Files.isRegularFile(cached)) return null;
+
+        try (InputStream stream = Files.newInputStream(cached);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (!in.readUTF().equals(hash)) return null;
+            return AstSerializer.read(in);
+        } catch (IOException | RuntimeException e) {
+            //Stale, corrupt or from another version, compile again and overwrite it
+            return null;
+        }
+    }
+
+    //Writes to a temporary file first so a concurrent run never reads half of a cache file. The cache
+    //is only an optimisation, so failing to write it (read-only directory, huge literals) is ignored.
+    private static void write(Path cached, String hash, List<Statement> statements) {
+        Path temporary = null;
+        try {
+            Path directory = cached.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, cached.getFileName().toString(), ".tmp");
+
+            try (OutputStream stream = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                out.writeUTF(hash);
+                AstSerializer.write(statements, out);
+            }
+
+            Files.move(temporary, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            if (temporary != null) temporary.toFile().delete();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.lex.Type;
+import org.aguerra.cookedham.interpret.parse.SideEffects;
+import org.aguerra.cookedham.interpret.parse.Statement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+//Decides whether a callable can safely be run from several interpreters at once. User functions are
+//pure when their body only writes its own locals, never prints and only calls other pure functions.
+//Parallel loop bodies are held to the weaker rule that nothing they call writes shared variables, so
+//they may print and use the atomic built-ins but not natives such as put, append, send or save.
+final class Purity {
+    private static final Map<Statement.Function, SideEffects> analyses = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<Statement.ForEach, SideEffects> loops = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private Purity() {}
+
+    static boolean isPure(Callable callable, Environment scope) {
+        return isPure(callable, scope, false, new HashSet<>());
+    }
+
+    //Describes how the parallel loop's body may write shared variables, or null when it cannot
+    static String findSharedWriter(Statement.ForEach loop, Environment scope) {
+        SideEffects sideEffects = loops.computeIfAbsent(loop, key -> SideEffects.of(key.body, (Statement.Variable) key.definition));
+        if (sideEffects.isUnresolved()) return "calls a nested or indirect function, which may assign to shared variables";
+
+        String appended = findSharedAppend(sideEffects, scope);
+        if (appended != null) return "appends with + to " + appended;
+
+        Set<Statement.Function> visiting = new HashSet<>();
+        for (String callee : sideEffects.getCallees()) {
+            Object value = scope.lookup(callee);
+            if (!(value instanceof Callable) || !isPure((Callable) value, scope, true, visiting)) {
+                return "calls '" + callee + "', which may assign to shared variables";
+            }
+        }
+
+        return null;
+    }
+
+    //+ appends to an ArrayList in place, so appending to a global array or to an array a function
+    //returns, which may be one too, writes shared state
+    private static String findSharedAppend(SideEffects sideEffects, Environment scope) {
+        for (String name : sideEffects.getAppendedNames()) {
+            Object value = scope.lookup(name);
+            if (value instanceof ArrayList) return "shared array '" + name + "'";
+            if (value instanceof Function && ((Function) value).declaration != null
+                    && ((Function) value).declaration.returnType == Type.ARRAY) return "the array returned by '" + name + "'";
+        }
+        for (String name : sideEffects.getAppendedElements()) {
+            Object value = scope.lookup(name);
+            if (value instanceof List && holdsArrays((List<?>) value)) return "an element of shared array '" + name + "'";
+        }
+        return null;
+    }
+
+    private static boolean holdsArrays(List<?> array) {
+        if (array instanceof NumericArray || array instanceof Range) return false;
+        for (Object element : array) {
+            if (element instanceof ArrayList) return true;
+        }
+        return false;
+    }
+
+    private static boolean isPure(Callable callable, Environment scope, boolean allowOutput, Set<Statement.Function> visiting) {
+        if (callable instanceof Native) return allowOutput ? ((Native) callable).isParallelSafe() : ((Native) callable).isPure();
+        if (!(callable instanceof Function) || ((Function) callable).declaration == null) return false;
+
+        Statement.Function declaration = ((Function) callable).declaration;
+        //Recursive calls are pure if everything else in the body is
+        if (!visiting.add(declaration)) return true;
+
+        SideEffects sideEffects = analyses.computeIfAbsent(declaration, SideEffects::of);
+        if (sideEffects.writesOuter() || sideEffects.isUnresolved()) return false;
+        if (sideEffects.performsOutput() && !allowOutput) return false;
+        if (findSharedAppend(sideEffects, ((Function) callable).closure) != null) return false;
+
+        //Callees are looked up where the function was declared, which may be another module
+        Environment closure = ((Function) callable).closure;
+        for (String callee : sideEffects.getCallees()) {
+            Object value = closure.lookup(callee);
+            if (!(value instanceof Callable) || !isPure((Callable) value, closure, allowOutput, visiting)) return false;
+        }
+
+        return true;
+    }
+}
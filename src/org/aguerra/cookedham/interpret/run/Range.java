@@ -0,0 +1,99 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//Lazy sequence returned by range(lo, hi, step). Elements are computed while looping, so iterating
+//over a huge range uses constant memory. The range stops before hi and counts down for negative steps.
+class Range implements Iterable<Object> {
+    final Number low, high, step;
+    private final boolean decimal;
+
+    Range(Number low, Number high, Number step) {
+        if (step.doubleValue() == 0) throw new RuntimeError(null, "Range step cannot be zero.");
+
+        this.low = low;
+        this.high = high;
+        this.step = step;
+        this.decimal = low instanceof Double || high instanceof Double || step instanceof Double;
+    }
+
+    int size() {
+        if (!decimal) {
+            long span = (long) high.intValue() - low.intValue();
+            int increment = step.intValue();
+            long count = increment > 0 ? (span + increment - 1) / increment : (span + increment + 1) / increment;
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, count));
+        }
+
+        //Start from the estimate and correct it with the same comparison the iterator makes
+        double start = low.doubleValue();
+        double increment = step.doubleValue();
+        long count = (long) Math.max(0, Math.ceil((high.doubleValue() - start) / increment));
+        while (count > 0 && !before(start + (count - 1) * increment)) count--;
+        while (before(start + count * increment)) count++;
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    Object get(int index) {
+        if (index < 0 || index >= size()) throw Sequences.outOfBounds();
+        if (!decimal) return low.intValue() + index * step.intValue();
+        return low.doubleValue() + index * step.doubleValue();
+    }
+
+    private boolean before(double value) {
+        return step.doubleValue() > 0 ? value < high.doubleValue() : value > high.doubleValue();
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return decimal ? new DecimalIterator() : new IntIterator();
+    }
+
+    @Override
+    public String toString() {
+        return "range(" + low + ", " + high + ", " + step + ")";
+    }
+
+    private class IntIterator implements Iterator<Object> {
+        private final int end = high.intValue();
+        private final int increment = step.intValue();
+        private long current = low.intValue();
+
+        @Override
+        public boolean hasNext() {
+            return increment > 0 ? current < end : current > end;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int value = (int) current;
+            current += increment;
+            return value;
+        }
+    }
+
+    private class DecimalIterator implements Iterator<Object> {
+        private final double start = low.doubleValue();
+        private final double end = high.doubleValue();
+        private final double increment = step.doubleValue();
+        private long index = 0;
+
+        //Computed from the index rather than accumulated so rounding errors do not add up
+        private double current() {
+            return start + index * increment;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return increment > 0 ? current() < end : current() > end;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return start + index++ * increment;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+//Built-ins for regular expressions. Patterns may be given as strings, which are compiled once and
+//kept in an LRU cache so a pattern used inside a loop is not compiled on every iteration, or as
+//pattern values made by regex(text). Matches are returned as views over the searched string. The
+//matcher reads its input through Timed, so a pattern that backtracks without end still times out.
+final class RegexNatives {
+    private static final LruCache<String, Pattern> patterns = new LruCache<>(256);
+    //Characters the matcher reads between checks of the budget's deadline
+    private static final int CHECK_INTERVAL = 1 << 12;
+
+    private RegexNatives() {}
+
+    static void define(Environment globals) {
+        globals.define("regex", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return pattern(arguments.get(0), "regex");
+            }
+        });
+        //matches(text, pattern), whether the whole text matches
+        globals.define("matches", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return pattern(arguments.get(1), "matches").matcher(new Timed(interpreter, text(arguments.get(0), "matches"))).matches();
+            }
+        });
+        //find(text, pattern), the first match followed by its groups, or an empty array
+        globals.define("find", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CharSequence text = text(arguments.get(0), "find");
+                Matcher matcher = pattern(arguments.get(1), "find").matcher(new Timed(interpreter, text));
+
+                ArrayList<Object> groups = new ArrayList<>();
+                if (!matcher.find()) return groups;
+                for (int i = 0; i <= matcher.groupCount(); i++) {
+                    groups.add(matcher.start(i) < 0 ? "" : StringView.of(text, matcher.start(i), matcher.end(i)));
+                }
+                return groups;
+            }
+        });
+        globals.define("findAll", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CharSequence text = text(arguments.get(0), "findAll");
+                Matcher matcher = pattern(arguments.get(1), "findAll").matcher(new Timed(interpreter, text));
+
+                ArrayList<Object> found = new ArrayList<>();
+                while (matcher.find()) {
+                    found.add(StringView.of(text, matcher.start(), matcher.end()));
+                }
+                interpreter.chargeArray(found.size(), null);
+                return found;
+            }
+        });
+        //replaceAll(text, pattern, replacement), where $1 in the replacement stands for the first group
+        globals.define("replaceAll", new Native(3) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Matcher matcher = pattern(arguments.get(1), "replaceAll").matcher(new Timed(interpreter, text(arguments.get(0), "replaceAll")));
+                try {
+                    String replaced = matcher.replaceAll(text(arguments.get(2), "replaceAll").toString());
+                    interpreter.chargeString(replaced.length(), null);
+                    return replaced;
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    throw new RuntimeError(null, "Invalid replacement for replaceAll: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private static Pattern pattern(Object value, String name) {
+        if (value instanceof Pattern) return (Pattern) value;
+        if (!Strings.isString(value)) throw new RuntimeError(null, "Expected pattern for " + name + ".");
+
+        String source = value.toString();
+        Pattern pattern = patterns.get(source);
+        if (pattern != null) return pattern;
+
+        try {
+            pattern = Pattern.compile(source);
+        } catch (PatternSyntaxException e) {
+            throw new RuntimeError(null, "Invalid pattern '" + source + "': " + e.getDescription() + ".");
+        }
+        patterns.put(source, pattern);
+        return pattern;
+    }
+
+    //Ropes are flattened once here instead of on every character the matcher reads
+    private static CharSequence text(Object value, String name) {
+        if (!Strings.isString(value)) throw new RuntimeError(null, "Expected string for " + name + ".");
+        return value instanceof Rope ? value.toString() : (CharSequence) value;
+    }
+
+    //Input that checks the deadline every CHECK_INTERVAL characters read. A matcher stays on the thread
+    //that made it, so the count needs no synchronization.
+    private static final class Timed implements CharSequence {
+        private final Interpreter interpreter;
+        private final CharSequence text;
+        private int reads = 0;
+
+        Timed(Interpreter interpreter, CharSequence text) {
+            this.interpreter = interpreter;
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads == CHECK_INTERVAL) {
+                reads = 0;
+                interpreter.checkTime(null);
+            }
+            return text.charAt(index);
+        }
+
+        //Groups and replacements are cut from the text itself
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
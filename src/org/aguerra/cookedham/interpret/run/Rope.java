@@ -0,0 +1,94 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+//String value made by +, the two strings it joins rather than a copy of them. Building a string
+//piece by piece in a loop then only allocates a node per step. The characters are copied into one
+//String the first time they are needed, by printing, comparing or indexing, and the pieces are
+//dropped afterwards.
+final class Rope implements CharSequence {
+    //Joins shorter than this are copied right away, which is cheaper than a node for short strings
+    static final int MIN_LENGTH = 256;
+
+    private CharSequence left;
+    private CharSequence right;
+    private final int length;
+    private String text;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length() + right.length();
+    }
+
+    static CharSequence join(CharSequence left, CharSequence right) {
+        if (right.length() == 0) return left;
+        if (left.length() == 0) return right;
+        if ((long) left.length() + right.length() > Integer.MAX_VALUE) throw new RuntimeError(null, "String too long.");
+        if (left.length() + right.length() < MIN_LENGTH) return left.toString() + right;
+        return new Rope(left, right);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return StringView.of(toString(), start, end);
+    }
+
+    //Equal to any string value with the same characters, and hashed like the String it stands for.
+    //String.equals only accepts Strings, so the interpreter compares strings through Strings.equal.
+    @Override
+    public boolean equals(Object other) {
+        return Strings.isString(other) && Strings.equal(this, (CharSequence) other);
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    //Walks the pieces with an explicit stack, since a rope built in a loop is as deep as the loop is long
+    @Override
+    public synchronized String toString() {
+        if (text != null) return text;
+
+        StringBuilder builder = new StringBuilder(length);
+        Deque<CharSequence> pending = new ArrayDeque<>();
+        pending.push(right);
+        pending.push(left);
+        while (!pending.isEmpty()) {
+            CharSequence piece = pending.pop();
+            if (piece instanceof Rope) {
+                Rope rope = (Rope) piece;
+                synchronized (rope) {
+                    if (rope.text != null) {
+                        builder.append(rope.text);
+                    } else {
+                        pending.push(rope.right);
+                        pending.push(rope.left);
+                    }
+                }
+            } else if (piece instanceof StringView) {
+                StringView view = (StringView) piece;
+                builder.append(view.source, view.start, view.end);
+            } else {
+                builder.append(piece);
+            }
+        }
+
+        text = builder.toString();
+        left = null;
+        right = null;
+        return text;
+    }
+}
@@ -0,0 +1,298 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//Keeps a JVM with warmed up interpreters running so scripts can be executed without paying for JVM
+//startup and JIT warm-up on every run. Listens on a loopback TCP port or on a Unix domain socket and
+//handles each connection on its own task thread.
+//
+//A connection carries any number of requests. A request is a kind byte, a string and a list of
+//string arguments (an int count followed by the strings):
+//  RUN      source   compiles and executes the source
+//  EXEC     id       executes a program compiled earlier by COMPILE or RUN
+//  COMPILE  source   compiles the source and answers with its id
+//Every response is a kind byte followed by a string, except EXIT which is followed by an int:
+//  OUT, ERR   output and error output, streamed while the script runs
+//  ID         id of the compiled program
+//  EXIT       ends the response. 0 on success, 65 on compile errors, 66 for unknown ids, 70 on runtime errors
+//Strings are an int byte length followed by that many UTF-8 bytes. A request with a string longer than
+//the server's limit, or with more than MAX_ARGUMENTS arguments, is answered with ERR and EXIT 64 and
+//the connection is closed, since the rest of the stream can no longer be read.
+public class ScriptServer {
+    public static final byte RUN = 'R';
+    public static final byte EXEC = 'X';
+    public static final byte COMPILE = 'C';
+
+    public static final byte OUT = 'o';
+    public static final byte ERR = 'e';
+    public static final byte ID = 'i';
+    public static final byte EXIT = 'x';
+
+    public static final int DEFAULT_MAX_STRING = 16 << 20;
+    public static final int MAX_ARGUMENTS = 1024;
+
+    private static final int CACHE_SIZE = 512;
+    private static final String WARM_UP =
+            "int total = 0 ; for ( int i = 0 ; i < 20000 ; i = i + 1 ) { total = total + i % 7 ; }";
+
+    private final BlockingQueue<ExecutionContext> contexts;
+    private final Budget budget;
+    private final int maxString;
+    private final LruCache<String, Program> programs = new LruCache<>(CACHE_SIZE);
+
+    public ScriptServer(int poolSize) {
+        this(poolSize, Budget.UNLIMITED);
+    }
+
+    //Every request runs within the budget, so one runaway script cannot hold a context forever
+    public ScriptServer(int poolSize, Budget budget) {
+        this(poolSize, budget, DEFAULT_MAX_STRING);
+    }
+
+    //maxString bounds the byte length of every string in a request, so a client cannot make the server
+    //allocate more than that for one of them
+    public ScriptServer(int poolSize, Budget budget, int maxString) {
+        this.budget = budget;
+        this.maxString = maxString;
+        contexts = new ArrayBlockingQueue<>(poolSize);
+
+        //Running a small loop in every context gets the interpreter compiled before the first request
+        Program warmUp = Program.compile(WARM_UP);
+        for (int i = 0; i < poolSize; i++) {
+            //Output streams to the client in frames at most every 100ms instead of one frame per line
+            ExecutionContext context = new ExecutionContext(Writer.nullWriter(), Writer.nullWriter(),
+                    OutputSink.FlushPolicy.PERIODIC);
+            context.execute(warmUp);
+            context.reset();
+            contexts.add(context);
+        }
+    }
+
+    //Port numbers listen on the loopback interface, anything else is the path of a Unix domain socket
+    public static ServerSocketChannel open(String address) throws IOException {
+        if (address.matches("\\d+")) {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+            return server;
+        }
+
+        Path path = Paths.get(address);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        path.toFile().deleteOnExit();
+        return server;
+    }
+
+    public void serve(ServerSocketChannel server) throws IOException {
+        for (;;) {
+            SocketChannel client = server.accept();
+            Tasks.execute(() -> handle(client));
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            int kind;
+            while ((kind = in.read()) != -1) {
+                String text;
+                List<String> arguments;
+                try {
+                    text = readString(in, maxString);
+                    arguments = readArguments(in, maxString);
+                } catch (BadRequest e) {
+                    writeFrame(out, ERR, e.getMessage() + "\n");
+                    exit(out, 64);
+                    return;
+                }
+
+                int exitCode;
+                try {
+                    switch (kind) {
+                        case COMPILE:
+                            exitCode = compile(text, out) == null ? 65 : 0;
+                            break;
+                        case RUN: {
+                            Program program = compile(text, out);
+                            exitCode = program == null ? 65 : run(program, arguments, out);
+                            break;
+                        }
+                        case EXEC: {
+                            Program program = programs.get(text);
+                            if (program == null) {
+                                writeFrame(out, ERR, "Unknown program id '" + text + "'.\n");
+                                exitCode = 66;
+                            } else {
+                                exitCode = run(program, arguments, out);
+                            }
+                            break;
+                        }
+                        default:
+                            writeFrame(out, ERR, "Unknown request.\n");
+                            exit(out, 64);
+                            return;
+                    }
+                } catch (RuntimeException | StackOverflowError e) {
+                    //A bug in the server must not drop the connection without an answer
+                    writeFrame(out, ERR, "Internal error: " + e + "\n");
+                    exitCode = 70;
+                }
+
+                exit(out, exitCode);
+            }
+        } catch (IOException e) {
+            //The client went away, nothing left to answer
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //Answers with the program id, or with the errors and null if the source does not compile
+    private Program compile(String source, DataOutputStream out) throws IOException {
+        String id = Program.hash(source);
+        Program program = programs.get(id);
+        if (program == null) {
+            try {
+                program = Program.compile(source);
+            } catch (CompileError error) {
+                writeFrame(out, ERR, error.getMessage() + "\n");
+                return null;
+            }
+            programs.put(id, program);
+        }
+
+        writeFrame(out, ID, id);
+        return program;
+    }
+
+    private int run(Program program, List<String> arguments, DataOutputStream out) throws IOException, InterruptedException {
+        ExecutionContext context = contexts.take();
+        FrameWriter output = new FrameWriter(out, OUT);
+        FrameWriter error = new FrameWriter(out, ERR);
+        try {
+            context.setOutput(output, error);
+            context.define("args", new ArrayList<Object>(arguments));
+            boolean succeeded = context.execute(program, budget);
+            output.flush();
+            error.flush();
+            return succeeded ? 0 : 70;
+        } finally {
+            //Clean globals for the next request, and no output left pointing at this connection
+            context.setOutput(Writer.nullWriter(), Writer.nullWriter());
+            context.reset();
+            contexts.add(context);
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, byte kind, String text) throws IOException {
+        synchronized (out) {
+            out.writeByte(kind);
+            writeString(out, text);
+        }
+    }
+
+    private static void exit(DataOutputStream out, int code) throws IOException {
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(code);
+            out.flush();
+        }
+    }
+
+    static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) throw new BadRequest("String length " + length + " outside 0 to " + maxLength + ".");
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readArguments(DataInputStream in, int maxLength) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ARGUMENTS) throw new BadRequest("Argument count " + count + " outside 0 to " + MAX_ARGUMENTS + ".");
+
+        List<String> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            arguments.add(readString(in, maxLength));
+        }
+        return arguments;
+    }
+
+    //A request the server refuses to read any further
+    private static final class BadRequest extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    //Sends script output to the client in frames. Output is buffered until the script flushes or a
+    //frame fills up, and spawned tasks may print at the same time so every frame is written whole.
+    private static final class FrameWriter extends Writer {
+        private static final int FRAME_SIZE = 8192;
+
+        private final DataOutputStream out;
+        private final byte kind;
+        private final StringBuilder pending = new StringBuilder();
+
+        FrameWriter(DataOutputStream out, byte kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            synchronized (out) {
+                pending.append(buffer, offset, length);
+                if (pending.length() >= FRAME_SIZE) sendPending();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                sendPending();
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        private void sendPending() throws IOException {
+            if (pending.length() == 0) return;
+            writeFrame(out, kind, pending.toString());
+            pending.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+//Size and indexing for everything an array variable can hold. Ranges compute both without iterating
+//and generators keep what they have produced for it. Lines, CSV files and JSON events are read from
+//the start like a loop over them would, and the walk is closed as soon as it is done so files are not
+//left open.
+final class Sequences {
+    private Sequences() {}
+
+    static boolean isSequence(Object value) {
+        return value instanceof List || value instanceof Range || isLazy(value);
+    }
+
+    static int size(Object value) {
+        if (value instanceof List) return ((List<?>) value).size();
+        if (value instanceof Range) return ((Range) value).size();
+        if (value instanceof Generator) return ((Generator) value).size();
+        if (!isLazy(value)) throw new RuntimeError(null, "Expected array, range or generator.");
+
+        Iterator<?> iterator = ((Iterable<?>) value).iterator();
+        int count = 0;
+        try {
+            for (; iterator.hasNext(); iterator.next()) count++;
+        } finally {
+            close(iterator);
+        }
+        return count;
+    }
+
+    static Object get(Object value, int index) {
+        if (value instanceof List) {
+            List<?> array = (List<?>) value;
+            if (index < 0 || index >= array.size()) throw outOfBounds();
+            return array.get(index);
+        }
+        if (value instanceof Range) return ((Range) value).get(index);
+        if (value instanceof Generator) return ((Generator) value).get(index);
+        if (!isLazy(value)) throw new RuntimeError(null, "Can only index arrays, ranges and generators.");
+        if (index < 0) throw outOfBounds();
+
+        Iterator<?> iterator = ((Iterable<?>) value).iterator();
+        try {
+            for (int i = 0; iterator.hasNext(); i++) {
+                Object element = iterator.next();
+                if (i == index) return element;
+            }
+        } finally {
+            close(iterator);
+        }
+        throw outOfBounds();
+    }
+
+    //Ends a loop over a sequence, which may have stopped before its last element
+    static void close(Iterator<?> iterator) {
+        if (!(iterator instanceof Closeable)) return;
+        try {
+            ((Closeable) iterator).close();
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Cannot close file: " + e.getMessage());
+        }
+    }
+
+    static RuntimeError outOfBounds() {
+        return new RuntimeError(null, "Index outside array bounds.");
+    }
+
+    //Channels are left out, since walking one would take its messages
+    private static boolean isLazy(Object value) {
+        return value instanceof Generator || value instanceof Lines || value instanceof Csv || value instanceof JsonEvents;
+    }
+}
@@ -0,0 +1,274 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.parse.AstSerializer;
+import org.aguerra.cookedham.interpret.parse.Statement;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+//Binary image of the globals a context has built up, so a library of script functions and constant
+//data can be loaded at startup without running the scripts that defined it. Functions are written
+//with AstSerializer and data values with a tag byte each. Natives are skipped because every context
+//defines its own. Tasks, channels, generators, files and functions that close over anything but the
+//globals belong to a running execution and cannot be restored, so snapshotting a context that holds
+//one in a global fails before anything is written.
+final class Snapshot {
+    private static final int MAGIC = 0x4348534E;
+    private static final int VERSION = 2;
+    private static final int BLOCK = 4096;
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INT = 2;
+    private static final byte DECIMAL = 3;
+    private static final byte CHAR = 4;
+    private static final byte STRING = 5;
+    private static final byte ARRAY = 6;
+    private static final byte ATOMIC = 7;
+    private static final byte RANGE = 8;
+    private static final byte OBJECT = 9;
+    private static final byte NUMERIC = 10;
+    private static final byte BUILDER = 11;
+    private static final byte PATTERN = 12;
+    private static final byte MODULE = 13;
+
+    private Snapshot() {}
+
+    static void write(Environment globals, DataOutput out) throws IOException {
+        List<String> functionNames = new ArrayList<>();
+        List<Statement> functions = new ArrayList<>();
+        List<String> dataNames = new ArrayList<>();
+        for (String name : globals.names()) {
+            Object value = globals.lookup(name);
+            if (value instanceof Native) continue;
+
+            if (value instanceof Function) {
+                if (((Function) value).closure != globals) {
+                    throw new IOException("Cannot snapshot global '" + name + "', its function closes over another scope.");
+                }
+                functionNames.add(name);
+                functions.add(((Function) value).declaration);
+            } else if (isData(value, Collections.newSetFromMap(new IdentityHashMap<>()))) {
+                dataNames.add(name);
+            } else {
+                throw new IOException("Cannot snapshot global '" + name + "', it holds a value of type " + value.getClass().getSimpleName() + ".");
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        AstSerializer.write(functions, out);
+        for (String name : functionNames) {
+            out.writeUTF(name);
+        }
+
+        out.writeInt(dataNames.size());
+        for (String name : dataNames) {
+            out.writeUTF(name);
+            writeValue(globals.lookup(name), out);
+        }
+    }
+
+    //Restored modules are the interpreter's own, so importing one later does not load it a second time
+    static void read(DataInput in, Interpreter interpreter) throws IOException {
+        Environment globals = interpreter.globals;
+        if (in.readInt() != MAGIC) throw new IOException("Not a snapshot.");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ".");
+
+        for (Statement function : AstSerializer.read(in)) {
+            globals.define(in.readUTF(), new Function((Statement.Function) function, globals));
+        }
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            globals.define(in.readUTF(), readValue(in, interpreter));
+        }
+    }
+
+    //Containers being checked are in visiting, so one that contains itself is not data
+    private static boolean isData(Object value, Set<Object> visiting) {
+        if (value instanceof NumericArray) return ((NumericArray) value).chunks != null;
+
+        if (value instanceof List || value instanceof Map) {
+            if (!visiting.add(value)) return false;
+            Iterable<?> elements = value instanceof List ? (List<?>) value : ((Map<?, ?>) value).values();
+            for (Object element : elements) {
+                if (!isData(element, visiting)) return false;
+            }
+            visiting.remove(value);
+            return true;
+        }
+
+        return value == null || value instanceof Boolean || value instanceof Integer || value instanceof Double
+                || value instanceof Character || Strings.isString(value) || value instanceof Range
+                || value instanceof StringBuilder || value instanceof Pattern || value instanceof Module
+                || (value instanceof AtomicCell && isData(((AtomicCell) value).get(), visiting));
+    }
+
+    private static void writeValue(Object value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DECIMAL);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (Strings.isString(value)) {
+            out.writeByte(STRING);
+            writeString(value.toString(), out);
+        } else if (value instanceof StringBuilder) {
+            out.writeByte(BUILDER);
+            writeString(value.toString(), out);
+        } else if (value instanceof Pattern) {
+            out.writeByte(PATTERN);
+            writeString(((Pattern) value).pattern(), out);
+            out.writeInt(((Pattern) value).flags());
+        } else if (value instanceof Module) {
+            out.writeByte(MODULE);
+            writeString(((Module) value).path.toString(), out);
+        } else if (value instanceof NumericArray) {
+            writeNumeric((NumericArray) value, out);
+        } else if (value instanceof Map) {
+            Map<?, ?> object = (Map<?, ?>) value;
+            out.writeByte(OBJECT);
+            out.writeInt(object.size());
+            for (Map.Entry<?, ?> entry : object.entrySet()) {
+                writeString(entry.getKey().toString(), out);
+                writeValue(entry.getValue(), out);
+            }
+        } else if (value instanceof List) {
+            List<?> array = (List<?>) value;
+            out.writeByte(ARRAY);
+            out.writeInt(array.size());
+            for (Object element : array) {
+                writeValue(element, out);
+            }
+        } else if (value instanceof AtomicCell) {
+            out.writeByte(ATOMIC);
+            writeValue(((AtomicCell) value).get(), out);
+        } else if (value instanceof Range) {
+            Range range = (Range) value;
+            out.writeByte(RANGE);
+            writeValue(range.low, out);
+            writeValue(range.high, out);
+            writeValue(range.step, out);
+        }
+    }
+
+    //writeUTF cannot hold more than 64KB, and constant data strings can be larger
+    private static void writeString(String text, DataOutput out) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //Numbers are copied out in blocks rather than boxed one at a time
+    private static void writeNumeric(NumericArray array, DataOutput out) throws IOException {
+        out.writeByte(NUMERIC);
+        out.writeBoolean(array.decimal);
+        out.writeInt(array.size);
+
+        int[] ints = array.decimal ? null : new int[BLOCK];
+        double[] decimals = array.decimal ? new double[BLOCK] : null;
+        for (int from = 0; from < array.size; from += BLOCK) {
+            int count = Math.min(BLOCK, array.size - from);
+            if (array.decimal) {
+                array.getDecimals(from, decimals, count);
+                for (int i = 0; i < count; i++) out.writeDouble(decimals[i]);
+            } else {
+                array.getInts(from, ints, count);
+                for (int i = 0; i < count; i++) out.writeInt(ints[i]);
+            }
+        }
+    }
+
+    //Arrays large enough to be off the heap when they were saved are restored off the heap
+    private static Object readNumeric(DataInput in) throws IOException {
+        boolean decimal = in.readBoolean();
+        int size = in.readInt();
+        if (size < OffHeapArray.THRESHOLD) {
+            ArrayList<Object> array = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                array.add(decimal ? (Object) in.readDouble() : (Object) in.readInt());
+            }
+            return array;
+        }
+
+        OffHeapArray array = OffHeapArray.allocate(size, decimal);
+        int[] ints = decimal ? null : new int[BLOCK];
+        double[] decimals = decimal ? new double[BLOCK] : null;
+        for (int from = 0; from < size; from += BLOCK) {
+            int count = Math.min(BLOCK, size - from);
+            if (decimal) {
+                for (int i = 0; i < count; i++) decimals[i] = in.readDouble();
+                array.putDecimals(from, decimals, count);
+            } else {
+                for (int i = 0; i < count; i++) ints[i] = in.readInt();
+                array.putInts(from, ints, count);
+            }
+        }
+        return array;
+    }
+
+    private static Object readValue(DataInput in, Interpreter interpreter) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL    : return null;
+            case BOOLEAN : return in.readBoolean();
+            case INT     : return in.readInt();
+            case DECIMAL : return in.readDouble();
+            case CHAR    : return in.readChar();
+            case STRING  : return readString(in);
+            case BUILDER : return new StringBuilder(readString(in));
+            case PATTERN : return Pattern.compile(readString(in), in.readInt());
+            case MODULE  : return interpreter.module(Paths.get(readString(in)));
+            case NUMERIC : return readNumeric(in);
+            case OBJECT  : {
+                int size = in.readInt();
+                Map<String, Object> object = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    object.put(readString(in), readValue(in, interpreter));
+                }
+                return object;
+            }
+            case ARRAY   : {
+                int size = in.readInt();
+                ArrayList<Object> array = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    array.add(readValue(in, interpreter));
+                }
+                return array;
+            }
+            case ATOMIC  : return new AtomicCell(readValue(in, interpreter));
+            case RANGE   : return new Range((Number) readValue(in, interpreter), (Number) readValue(in, interpreter), (Number) readValue(in, interpreter));
+        }
+
+        throw new IOException("Unknown value tag " + tag + ".");
+    }
+}
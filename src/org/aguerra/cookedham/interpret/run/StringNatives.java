@@ -0,0 +1,131 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Built-ins for strings and builders. substring, split and trim return StringViews over the string
+//they were given, so cutting a line into fields does not copy it. A builder collects appended text
+//in one growing buffer, for loops that would otherwise rebuild a string with + on every step.
+final class StringNatives {
+    private StringNatives() {}
+
+    static void define(Environment globals) {
+        globals.define("substring", new Native(3) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CharSequence text = string(arguments.get(0), "substring");
+                int start = index(arguments.get(1), "substring");
+                int end = index(arguments.get(2), "substring");
+                if (start < 0 || end > text.length() || start > end) {
+                    throw new RuntimeError(null, "Substring range " + start + " to " + end + " outside string of length " + text.length() + ".");
+                }
+                return StringView.of(text, start, end);
+            }
+        });
+        globals.define("indexOf", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CharSequence text = string(arguments.get(0), "indexOf");
+                String target = string(arguments.get(1), "indexOf").toString();
+                if (text instanceof StringView) {
+                    StringView view = (StringView) text;
+                    int found = view.source.indexOf(target, view.start);
+                    return found >= 0 && found + target.length() <= view.end ? found - view.start : -1;
+                }
+                return text.toString().indexOf(target);
+            }
+        });
+        globals.define("split", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CharSequence text = string(arguments.get(0), "split");
+                String separator = string(arguments.get(1), "split").toString();
+                if (separator.isEmpty()) throw new RuntimeError(null, "Expected non-empty separator for split.");
+
+                //Search the underlying string so no part of it is copied
+                String source = text instanceof StringView ? ((StringView) text).source : text.toString();
+                int offset = text instanceof StringView ? ((StringView) text).start : 0;
+                int end = offset + text.length();
+
+                ArrayList<Object> parts = new ArrayList<>();
+                int start = offset;
+                for (int found = source.indexOf(separator, start); found >= 0 && found + separator.length() <= end;
+                     found = source.indexOf(separator, start)) {
+                    parts.add(StringView.of(source, start, found));
+                    start = found + separator.length();
+                }
+                parts.add(StringView.of(source, start, end));
+                interpreter.chargeArray(parts.size(), null);
+                return parts;
+            }
+        });
+        globals.define("trim", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CharSequence text = string(arguments.get(0), "trim");
+                int start = 0;
+                int end = text.length();
+                while (start < end && text.charAt(start) <= ' ') start++;
+                while (end > start && text.charAt(end - 1) <= ' ') end--;
+                return StringView.of(text, start, end);
+            }
+        });
+        globals.define("charAt", new Native(2) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                CharSequence text = string(arguments.get(0), "charAt");
+                int index = index(arguments.get(1), "charAt");
+                if (index < 0 || index >= text.length()) throw new RuntimeError(null, "Index outside string bounds.");
+                return text.charAt(index);
+            }
+        });
+        globals.define("replace", new Native(3) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                String text = string(arguments.get(0), "replace").toString();
+                String replaced = text.replace(string(arguments.get(1), "replace"), string(arguments.get(2), "replace"));
+                interpreter.chargeString(replaced.length(), null);
+                return replaced;
+            }
+        });
+        //append(builder, value) adds value the way print would show it and returns the builder
+        globals.define("append", new Native(2, false) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                if (!(arguments.get(0) instanceof StringBuilder)) throw new RuntimeError(null, "Expected builder for append.");
+
+                StringBuilder builder = (StringBuilder) arguments.get(0);
+                int before = builder.length();
+                Object value = arguments.get(1);
+                if (value instanceof StringView) {
+                    StringView view = (StringView) value;
+                    builder.append(view.source, view.start, view.end);
+                } else if (Strings.isString(value)) {
+                    builder.append(value.toString());
+                } else {
+                    builder.append(interpreter.stringify(value));
+                }
+                interpreter.chargeString(builder.length() - before, null);
+                return builder;
+            }
+        });
+        //toString(value), the text of a builder or of any value as print would show it
+        globals.define("toString", new Native(1) {
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                Object value = arguments.get(0);
+                return value instanceof CharSequence ? value.toString() : interpreter.stringify(value);
+            }
+        });
+    }
+
+    private static CharSequence string(Object value, String name) {
+        if (!Strings.isString(value)) throw new RuntimeError(null, "Expected string for " + name + ".");
+        return (CharSequence) value;
+    }
+
+    private static int index(Object value, String name) {
+        if (!(value instanceof Integer)) throw new RuntimeError(null, "Expected int index for " + name + ".");
+        return (Integer) value;
+    }
+}
@@ -0,0 +1,60 @@
+package org.aguerra.cookedham.interpret.run;
+
+//String value that is a range of another string, returned by substring, split and trim so that
+//taking pieces of a string does not copy its characters. The characters are only copied out when
+//something needs a real String, and then only once.
+final class StringView implements CharSequence {
+    final String source;
+    final int start;
+    final int end;
+    private String text;
+
+    private StringView(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    //Range of a string value, itself when the range covers all of it
+    static CharSequence of(CharSequence value, int start, int end) {
+        if (start == 0 && end == value.length()) return value;
+        if (value instanceof StringView) {
+            StringView view = (StringView) value;
+            return new StringView(view.source, view.start + start, view.start + end);
+        }
+        return new StringView(value.toString(), start, end);
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return of(this, start, end);
+    }
+
+    //Equal to any string value with the same characters, and hashed like the String it stands for.
+    //String.equals only accepts Strings, so the interpreter compares strings through Strings.equal.
+    @Override
+    public boolean equals(Object other) {
+        return Strings.isString(other) && Strings.equal(this, (CharSequence) other);
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) text = source.substring(start, end);
+        return text;
+    }
+}
@@ -0,0 +1,22 @@
+package org.aguerra.cookedham.interpret.run;
+
+//A string value is a String, a StringView or a Rope. A builder is a StringBuilder and is not a string
+//value, even though it is a CharSequence too.
+final class Strings {
+    private Strings() {}
+
+    static boolean isString(Object value) {
+        return value instanceof CharSequence && !(value instanceof StringBuilder);
+    }
+
+    //The value as a String, or null when it is not a string value
+    static String text(Object value) {
+        return isString(value) ? value.toString() : null;
+    }
+
+    static boolean equal(CharSequence a, CharSequence b) {
+        if (a instanceof String) return ((String) a).contentEquals(b);
+        if (b instanceof String) return ((String) b).contentEquals(a);
+        return a.toString().equals(b.toString());
+    }
+}
@@ -0,0 +1,32 @@
+package org.aguerra.cookedham.interpret.run;
+
+import org.aguerra.cookedham.interpret.lex.Token;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+//Value of a future variable: the pending result of a spawned function call.
+class Task {
+    private final Future<Object> result;
+
+    Task(Future<Object> result) {
+        this.result = result;
+    }
+
+    Object await(Token keyword) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeError) throw (RuntimeError) e.getCause();
+            throw new RuntimeError(keyword, "Spawned task failed: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(keyword, "Interrupted while awaiting task.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return result.isDone() ? "<future done>" : "<future>";
+    }
+}
@@ -0,0 +1,34 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//Runs spawned script tasks. Uses one virtual thread per task when the JVM has them so scripts can
+//keep thousands of blocking calls in flight, and falls back to a cached pool of daemon threads.
+final class Tasks {
+    private static final ExecutorService executor = createExecutor();
+
+    private Tasks() {}
+
+    static Future<Object> submit(Callable<Object> task) {
+        return executor.submit(task);
+    }
+
+    static void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "cookedham-task");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.aguerra.cookedham.interpret.run;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+//Binary format of save(path, value) and load(path). Every value is a tag byte followed by its data in
+//little-endian order. Arrays of only ints or only decimals are written as one block of raw numbers,
+//which for off-heap and mapped arrays is a straight copy of their buffers to the file and back, and
+//other arrays as a count followed by each element.
+final class ValueCodec {
+    private static final int MAGIC = 0x43485631;
+    private static final int BUFFER_SIZE = 1 << 20;
+    //Arrays are only presized up to this, so a count that lies costs no more than the data behind it
+    private static final int MAX_PRESIZE = 1 << 16;
+    private static final int MAX_DEPTH = 512;
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INT = 2;
+    private static final byte DECIMAL = 3;
+    private static final byte CHAR = 4;
+    private static final byte STRING = 5;
+    private static final byte ARRAY = 6;
+    private static final byte INT_ARRAY = 7;
+    private static final byte DECIMAL_ARRAY = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private ValueCodec(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static void save(Path path, Object value) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ValueCodec codec = new ValueCodec(channel);
+            codec.buffer.putInt(MAGIC);
+            codec.write(value);
+            codec.drain();
+        }
+    }
+
+    //Arrays and strings are charged to the interpreter's budget before they are allocated
+    static Object load(Path path, Interpreter interpreter) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ValueCodec codec = new ValueCodec(channel);
+            codec.buffer.flip();
+            codec.require(4);
+            if (codec.buffer.getInt() != MAGIC) throw new IOException("Not a saved value.");
+            return codec.read(interpreter, 0);
+        }
+    }
+
+    private void write(Object value) throws IOException {
+        if (value == null) {
+            room(1);
+            buffer.put(NULL);
+        } else if (value instanceof Boolean) {
+            room(2);
+            buffer.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof Integer) {
+            room(5);
+            buffer.put(INT).putInt((Integer) value);
+        } else if (value instanceof Double) {
+            room(9);
+            buffer.put(DECIMAL).putDouble((Double) value);
+        } else if (value instanceof Character) {
+            room(3);
+            buffer.put(CHAR).putChar((Character) value);
+        } else if (Strings.isString(value)) {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            room(5);
+            buffer.put(STRING).putInt(bytes.length);
+            writeBytes(ByteBuffer.wrap(bytes));
+        } else if (value instanceof NumericArray) {
+            writeNumeric((NumericArray) value);
+        } else if (value instanceof List) {
+            writeList((List<?>) value);
+        } else {
+            throw new RuntimeError(null, "Cannot save a value of type " + value.getClass().getSimpleName() + ".");
+        }
+    }
+
+    private void writeNumeric(NumericArray array) throws IOException {
+        ByteBuffer[] chunks = array.chunks;
+        if (chunks == null) throw new RuntimeError(null, "Array was released when its scope ended.");
+
+        room(5);
+        buffer.put(array.decimal ? DECIMAL_ARRAY : INT_ARRAY).putInt(array.size);
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer block = chunk.duplicate();
+            block.clear();
+            writeBytes(block);
+        }
+    }
+
+    private void writeList(List<?> array) throws IOException {
+        byte tag = blockTag(array);
+        room(5);
+        buffer.put(tag).putInt(array.size());
+
+        if (tag == INT_ARRAY) {
+            for (Object element : array) {
+                room(4);
+                buffer.putInt((Integer) element);
+            }
+        } else if (tag == DECIMAL_ARRAY) {
+            for (Object element : array) {
+                room(8);
+                buffer.putDouble((Double) element);
+            }
+        } else {
+            for (Object element : array) {
+                write(element);
+            }
+        }
+    }
+
+    //INT_ARRAY or DECIMAL_ARRAY when every element is of that type, ARRAY otherwise
+    private static byte blockTag(List<?> array) {
+        if (array.isEmpty()) return ARRAY;
+
+        Class<?> type = array.get(0) == null ? null : array.get(0).getClass();
+        if (type != Integer.class && type != Double.class) return ARRAY;
+        for (Object element : array) {
+            if (element == null || element.getClass() != type) return ARRAY;
+        }
+        return type == Integer.class ? INT_ARRAY : DECIMAL_ARRAY;
+    }
+
+    //Large blocks go past the buffer straight to the channel
+    private void writeBytes(ByteBuffer bytes) throws IOException {
+        if (bytes.remaining() <= buffer.remaining()) {
+            buffer.put(bytes);
+            return;
+        }
+
+        drain();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void room(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private Object read(Interpreter interpreter, int depth) throws IOException {
+        if (depth > MAX_DEPTH) throw new IOException("Saved value is nested more than " + MAX_DEPTH + " deep.");
+        require(1);
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL    : return null;
+            case BOOLEAN : require(1); return buffer.get() != 0;
+            case INT     : require(4); return buffer.getInt();
+            case DECIMAL : require(8); return buffer.getDouble();
+            case CHAR    : require(2); return buffer.getChar();
+            case STRING  : {
+                int length = readCount(1);
+                interpreter.chargeString(length, null);
+                byte[] bytes = new byte[length];
+                readBytes(ByteBuffer.wrap(bytes));
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case ARRAY   : {
+                int size = readCount(1);
+                interpreter.chargeArray(size, null);
+                ArrayList<Object> array = new ArrayList<>(Math.min(size, MAX_PRESIZE));
+                for (int i = 0; i < size; i++) {
+                    array.add(read(interpreter, depth + 1));
+                }
+                return array;
+            }
+            case INT_ARRAY     :
+            case DECIMAL_ARRAY : {
+                int size = readCount(tag == DECIMAL_ARRAY ? 8 : 4);
+                interpreter.chargeArray(size, null);
+                return readBlock(size, tag == DECIMAL_ARRAY);
+            }
+        }
+
+        throw new IOException("Unknown value tag " + tag + ".");
+    }
+
+    //Arrays large enough to be allocated off the heap are read into their buffers without unboxing
+    private Object readBlock(int size, boolean decimal) throws IOException {
+        if (size >= OffHeapArray.THRESHOLD) {
+            OffHeapArray array = OffHeapArray.allocate(size, decimal);
+            for (ByteBuffer chunk : array.chunks) {
+                readBytes(chunk.duplicate());
+            }
+            return array;
+        }
+
+        ArrayList<Object> array = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (decimal) {
+                require(8);
+                array.add(buffer.getDouble());
+            } else {
+                require(4);
+                array.add(buffer.getInt());
+            }
+        }
+        return array;
+    }
+
+    //Every element takes at least elementBytes, so a count the rest of the file cannot hold is corrupt
+    //and is refused before anything is allocated for it
+    private int readCount(int elementBytes) throws IOException {
+        require(4);
+        int count = buffer.getInt();
+        long left = buffer.remaining() + channel.size() - channel.position();
+        if (count < 0 || (long) count * elementBytes > left) throw new IOException("Corrupt saved value.");
+        return count;
+    }
+
+    //Fills target from what is buffered, then reads the rest straight from the channel
+    private void readBytes(ByteBuffer target) throws IOException {
+        if (buffer.hasRemaining()) {
+            ByteBuffer buffered = buffer.duplicate();
+            buffered.limit(buffered.position() + Math.min(buffered.remaining(), target.remaining()));
+            target.put(buffered);
+            buffer.position(buffered.position());
+        }
+
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) throw new EOFException("Saved value ends early.");
+        }
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) throw new EOFException("Saved value ends early.");
+        }
+        buffer.flip();
+    }
+}
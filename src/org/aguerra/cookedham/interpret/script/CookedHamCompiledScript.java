@@ -0,0 +1,29 @@
+package org.aguerra.cookedham.interpret.script;
+
+import org.aguerra.cookedham.interpret.run.Program;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+//Parsed script that can be evaluated repeatedly without lexing or parsing again.
+public class CookedHamCompiledScript extends CompiledScript {
+    private final CookedHamScriptEngine engine;
+    private final Program program;
+
+    CookedHamCompiledScript(CookedHamScriptEngine engine, Program program) {
+        this.engine = engine;
+        this.program = program;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        return engine.execute(program, context);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
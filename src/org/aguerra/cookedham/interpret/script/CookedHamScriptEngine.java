@@ -0,0 +1,211 @@
+package org.aguerra.cookedham.interpret.script;
+
+import org.aguerra.cookedham.interpret.run.CompileError;
+import org.aguerra.cookedham.interpret.run.ExecutionContext;
+import org.aguerra.cookedham.interpret.run.LruCache;
+import org.aguerra.cookedham.interpret.run.Program;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+//javax.script engine for CookedHam. Each engine keeps its own globals, so functions defined by one
+//eval can be called by later evals and through Invocable. Bindings are defined as globals before an
+//eval, and the ones the script assigned are written back to engine scope after it.
+public class CookedHamScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+    private static final int CACHE_SIZE = 256;
+
+    //Compiled programs shared by every engine, keyed by the hash of their source
+    private static final LruCache<String, Program> programs = new LruCache<>(CACHE_SIZE);
+
+    private final CookedHamScriptEngineFactory factory;
+    private final ExecutionContext executionContext = new ExecutionContext();
+    //Binding values the globals were last defined from or written back as
+    private final Map<String, Object> bound = new HashMap<>();
+
+    CookedHamScriptEngine(CookedHamScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return execute(program(script), context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return new CookedHamCompiledScript(this, program(script));
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    @Override
+    public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        if (!executionContext.isFunction(name)) throw new NoSuchMethodException(name);
+
+        Object[] arguments = new Object[args == null ? 0 : args.length];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = toScriptValue(args[i]);
+        }
+
+        Object result;
+        try {
+            result = executionContext.call(name, arguments);
+        } catch (IllegalArgumentException e) {
+            throw new ScriptException(e.getMessage());
+        }
+
+        if (executionContext.hadRuntimeError()) throw new ScriptException(executionContext.getLastError());
+        return result;
+    }
+
+    //CookedHam has no objects, so there are no methods to invoke
+    @Override
+    public Object invokeMethod(Object thiz, String name, Object... args) throws NoSuchMethodException {
+        throw new NoSuchMethodException(name);
+    }
+
+    //Implements the interface with script functions of the same names
+    @Override
+    public <T> T getInterface(Class<T> clasz) {
+        if (clasz == null || !clasz.isInterface()) throw new IllegalArgumentException("Not an interface: " + clasz);
+
+        Object proxy = Proxy.newProxyInstance(clasz.getClassLoader(), new Class<?>[]{ clasz },
+                (instance, method, args) -> invokeFunction(method.getName(), args));
+        return clasz.cast(proxy);
+    }
+
+    @Override
+    public <T> T getInterface(Object thiz, Class<T> clasz) {
+        return null;
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    //Returns the value of the last expression statement at the top level of the program
+    Object execute(Program program, ScriptContext context) throws ScriptException {
+        executionContext.setOutput(context.getWriter(), context.getErrorWriter());
+        //Engine scope goes last so it wins over global scope
+        Map<String, Object> bindings = new HashMap<>();
+        collect(context.getBindings(ScriptContext.GLOBAL_SCOPE), bindings);
+        collect(context.getBindings(ScriptContext.ENGINE_SCOPE), bindings);
+        bind(bindings);
+
+        boolean succeeded;
+        try {
+            succeeded = executionContext.execute(program);
+        } finally {
+            writeBack(bindings, context.getBindings(ScriptContext.ENGINE_SCOPE));
+        }
+
+        if (!succeeded) throw new ScriptException(executionContext.getLastError());
+        return executionContext.getResult();
+    }
+
+    private static void collect(Bindings bindings, Map<String, Object> into) {
+        if (bindings == null) return;
+
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            //Skips engine properties such as javax.script.filename
+            if (entry.getKey().indexOf('.') >= 0) continue;
+            into.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    //Only defines the globals whose binding changed since the last eval saw it
+    private void bind(Map<String, Object> bindings) {
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            String name = entry.getKey();
+            if (bound.containsKey(name) && Objects.equals(bound.get(name), entry.getValue())) continue;
+
+            executionContext.define(name, toScriptValue(entry.getValue()));
+            bound.put(name, entry.getValue());
+        }
+    }
+
+    //Globals the script assigned go back into engine scope, where later evals and the host see them
+    private void writeBack(Map<String, Object> bindings, Bindings engineScope) {
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            Object value = executionContext.get(entry.getKey());
+            if (Objects.equals(toScriptValue(entry.getValue()), value)) continue;
+
+            if (engineScope != null) engineScope.put(entry.getKey(), value);
+            bound.put(entry.getKey(), value);
+        }
+    }
+
+    private static Program program(String source) throws ScriptException {
+        String hash = Program.hash(source);
+        Program program = programs.get(hash);
+        if (program != null) return program;
+
+        try {
+            program = Program.compile(source);
+        } catch (CompileError e) {
+            throw new ScriptException(e.getMessage());
+        }
+
+        programs.put(hash, program);
+        return program;
+    }
+
+    //The interpreter only knows int, decimal, string, char, bool and arrays of those
+    private static Object toScriptValue(Object value) {
+        if (value instanceof Long || value instanceof Short || value instanceof Byte) return ((Number) value).intValue();
+        if (value instanceof Float) return ((Float) value).doubleValue();
+        if (value instanceof List && !(value instanceof ArrayList)) {
+            List<Object> array = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                array.add(toScriptValue(element));
+            }
+            return array;
+        }
+
+        return value;
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        StringBuilder source = new StringBuilder();
+        char[] buffer = new char[8192];
+        try {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                source.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+
+        return source.toString();
+    }
+}
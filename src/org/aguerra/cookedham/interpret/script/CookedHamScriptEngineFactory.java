@@ -0,0 +1,85 @@
+package org.aguerra.cookedham.interpret.script;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CookedHamScriptEngineFactory implements ScriptEngineFactory {
+    private static final String NAME = "CookedHam";
+    private static final String VERSION = "1.0";
+
+    @Override
+    public String getEngineName() {
+        return NAME;
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList("ch");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return Collections.singletonList("application/x-cookedham");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return Arrays.asList("cookedham", "CookedHam", "jham");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return NAME;
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE           : return getEngineName();
+            case ScriptEngine.ENGINE_VERSION   : return getEngineVersion();
+            case ScriptEngine.NAME             : return getNames().get(0);
+            case ScriptEngine.LANGUAGE         : return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION : return getLanguageVersion();
+            //Each engine keeps one set of globals, so engines must not be shared between threads
+            default                            : return null;
+        }
+    }
+
+    //The lexer splits on whitespace, so every token is separated by a space
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return m + " ( " + String.join(" , ", args) + " )";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "print \"" + toDisplay + "\" ;";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder program = new StringBuilder();
+        for (String statement : statements) {
+            program.append(statement).append(" ;\n");
+        }
+        return program.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new CookedHamScriptEngine(this);
+    }
+}
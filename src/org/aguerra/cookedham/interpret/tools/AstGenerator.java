@@ -84,13 +84,16 @@ public class AstGenerator {
                     "Assign      : Token name, Expression value, Expression arrayIndex",
                     "ArrayAccess : Token identifier, Expression index",
                     "ArrayBlock  : List<Expression> elements",
+                    "Await       : Token keyword, Expression task",
                     "Binary      : Expression left, Token operator, Expression right",
                     "Break       : Statement loop",
                     "Call        : Expression calle, Token paren, List<Expression> arguments",
+                    "Get         : Expression object, Token name",
                     "Grouping    : Expression expression",
                     "Len         : Expression expression, Token keyword",
                     "Literal     : Object value",
                     "Logical     : Expression left, Token operator, Expression right",
+                    "Spawn       : Token keyword, Call call",
                     "Ternary     : Expression condition, Expression truthExpression, Expression falseExpression",
                     "Unary       : Token operator, Expression right",
                     "Variable    : Token name"
@@ -100,12 +103,14 @@ public class AstGenerator {
                     "Block          : List<Statement> statements",
                     "LineExpression : Expression expression",
                     "If             : Expression condition, Statement thenBranch, Statement elseBranch",
-                    "Function       : Token name, List<Token> params, List<Type> paramTypes, List<Statement> body, Type returnType",
+                    "Import         : Token keyword, Token path, Token name",
+                    "Function       : Token name, List<Token> params, List<Type> paramTypes, List<Statement> body, Type returnType, boolean generator",
                     "Print          : Expression expression",
                     "Return         : Token keyword, Expression value",
-                    "Variable       : Token name, Type type, Type arrayType, Expression init",
+                    "Yield          : Token keyword, Expression value",
+                    "Variable       : Token name, Type type, Type arrayType, Expression init, boolean offheap",
                     "For            : Statement initializer, Expression condition, Expression increment, Statement body",
-                    "ForEach        : Statement definition, Expression array, Statement body",
+                    "ForEach        : Statement definition, Expression array, Statement body, boolean parallel",
                     "While          : Expression condition, Statement body"
             ));
         } catch (IOException e) {
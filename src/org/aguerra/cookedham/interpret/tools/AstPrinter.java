@@ -68,6 +68,21 @@ public class AstPrinter implements Expression.Visitor<String> {
         return null;
     }
 
+    @Override
+    public String visitSpawnExpression(Expression.Spawn expression) {
+        return parenthesize("spawn", expression.call);
+    }
+
+    @Override
+    public String visitGetExpression(Expression.Get expression) {
+        return parenthesize("get " + expression.name.getToken(), expression.object);
+    }
+
+    @Override
+    public String visitAwaitExpression(Expression.Await expression) {
+        return parenthesize("await", expression.task);
+    }
+
     @Override
     public String visitLenExpression(Expression.Len expression) {
         return null;
@@ -0,0 +1,100 @@
+import org.aguerra.cookedham.interpret.run.BatchRunner;
+import org.aguerra.cookedham.interpret.run.Budget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchTest {
+    private Path directory;
+    private Path scripts;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("batch");
+        scripts = directory.resolve("scripts");
+        write("a/sum.ch", "int total = 0 ;\nfor ( int i = 1 ; i <= 100 ; i = i + 1 ) {\n    total = total + i ;\n}\nprint total ;");
+        write("b/sum.ch", "print 2 ;");
+        write("broken.ch", "int x = ;");
+        write("failing.ch", "print 1 ;\narray < int > a = { 1 } ;\nprint a [ 4 ] ;");
+        write("forever.ch", "while ( true ) {\n}");
+    }
+
+    @AfterEach
+    void clean() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void testScriptsAreFoundInOrder() throws IOException {
+        List<Path> found = BatchRunner.scripts(scripts);
+        assertEquals(List.of(scripts.resolve("a/sum.ch"), scripts.resolve("b/sum.ch"), scripts.resolve("broken.ch"),
+                scripts.resolve("failing.ch"), scripts.resolve("forever.ch")), found);
+
+        Path list = directory.resolve("list.txt");
+        Files.write(list, List.of(scripts.resolve("b/sum.ch").toString(), "", scripts.resolve("broken.ch").toString()));
+        assertEquals(List.of(scripts.resolve("b/sum.ch"), scripts.resolve("broken.ch")), BatchRunner.scripts(list));
+    }
+
+    @Test
+    void testResultsAndOutputDirectory() throws Exception {
+        Path output = directory.resolve("output");
+        List<BatchRunner.Result> results = new BatchRunner(3, output, Budget.UNLIMITED.withMaxSteps(100_000))
+                .run(BatchRunner.scripts(scripts));
+
+        assertEquals(5, results.size());
+        assertEquals(BatchRunner.Status.OK, results.get(0).status);
+        assertEquals(BatchRunner.Status.OK, results.get(1).status);
+        assertEquals(BatchRunner.Status.COMPILE_ERROR, results.get(2).status);
+        assertEquals(BatchRunner.Status.RUNTIME_ERROR, results.get(3).status);
+        assertEquals(BatchRunner.Status.RUNTIME_ERROR, results.get(4).status);
+        assertEquals("Execution exceeded its step limit.", results.get(4).message);
+        assertEquals(scripts.resolve("failing.ch"), results.get(3).script);
+
+        //Scripts sharing a name keep their directories apart
+        assertEquals("5050\n", read(output.resolve("a/sum" + BatchRunner.OUT_EXTENSION)));
+        assertEquals("2\n", read(output.resolve("b/sum" + BatchRunner.OUT_EXTENSION)));
+        assertEquals("1\n", read(output.resolve("failing" + BatchRunner.OUT_EXTENSION)));
+        assertFalse(read(output.resolve("failing" + BatchRunner.ERR_EXTENSION)).isEmpty());
+        assertFalse(Files.exists(scripts.resolve("a/sum" + BatchRunner.OUT_EXTENSION)));
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        BatchRunner.report(results, new PrintStream(report, true, StandardCharsets.UTF_8));
+        assertTrue(report.toString(StandardCharsets.UTF_8).contains("5 scripts, 3 failed"));
+    }
+
+    @Test
+    void testOutputNextToScriptsKeepsExpectedOutput() throws Exception {
+        Path expected = scripts.resolve("a/sum.out");
+        Files.write(expected, List.of("expected"));
+
+        List<BatchRunner.Result> results = new BatchRunner(2, null).run(List.of(scripts.resolve("a/sum.ch")));
+        assertEquals(BatchRunner.Status.OK, results.get(0).status);
+        assertEquals("5050\n", read(scripts.resolve("a/sum" + BatchRunner.OUT_EXTENSION)));
+        assertEquals("", read(scripts.resolve("a/sum" + BatchRunner.ERR_EXTENSION)));
+        assertEquals("expected\n", read(expected));
+    }
+
+    private void write(String name, String source) throws IOException {
+        Path file = scripts.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
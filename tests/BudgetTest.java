@@ -0,0 +1,183 @@
+import org.aguerra.cookedham.interpret.run.Budget;
+import org.aguerra.cookedham.interpret.run.ExecutionContext;
+import org.aguerra.cookedham.interpret.run.Program;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetTest {
+    private static final Program FOREVER = Program.compile("while ( true ) {\n}");
+    private static final Program GROW = Program.compile(
+            "array grow ( int n ) {\n" +
+            "    array < int > a ;\n" +
+            "    for ( int i = 0 ; i < n ; i = i + 1 ) {\n" +
+            "        a = a + { i } ;\n" +
+            "    }\n" +
+            "    return a ;\n" +
+            "}\n" +
+            "int grown = size ( grow ( count ) ) ;");
+    private static final Program REPEAT = Program.compile(
+            "string repeat ( int n ) {\n" +
+            "    string s = \"\" ;\n" +
+            "    for ( int i = 0 ; i < n ; i = i + 1 ) {\n" +
+            "        s = s + \"ab\" ;\n" +
+            "    }\n" +
+            "    return s ;\n" +
+            "}\n" +
+            "int repeated = len ( repeat ( count ) ) ;");
+    private static final Program DEEP = Program.compile(
+            "int down ( int n ) {\n" +
+            "    if ( n == 0 ) {\n" +
+            "        return 0 ;\n" +
+            "    }\n" +
+            "    return 1 + down ( n - 1 ) ;\n" +
+            "}\n" +
+            "int reached = down ( count ) ;");
+
+    private ExecutionContext context;
+
+    @BeforeEach
+    void init() {
+        context = new ExecutionContext(new StringWriter(), new StringWriter());
+    }
+
+    @Test
+    void testStepLimit() {
+        assertFalse(context.execute(FOREVER, Budget.UNLIMITED.withMaxSteps(10_000)));
+        assertEquals("Execution exceeded its step limit.", context.getLastError());
+    }
+
+    @Test
+    void testTimeout() {
+        long start = System.nanoTime();
+        assertFalse(context.execute(FOREVER, Budget.UNLIMITED.withTimeout(Duration.ofMillis(100))));
+        assertEquals("Execution timed out.", context.getLastError());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(10).toNanos());
+    }
+
+    @Test
+    void testArrayElementQuota() {
+        context.define("count", 1000);
+        assertTrue(context.execute(GROW, Budget.UNLIMITED.withMaxArrayElements(10_000)));
+        assertEquals(1000, context.get("grown"));
+
+        context.define("count", 20_000);
+        assertFalse(context.execute(GROW, Budget.UNLIMITED.withMaxArrayElements(10_000)));
+        assertEquals("Execution exceeded its array element quota.", context.getLastError());
+    }
+
+    @Test
+    void testStringQuota() {
+        context.define("count", 1000);
+        assertTrue(context.execute(REPEAT, Budget.UNLIMITED.withMaxStringBytes(10_000)));
+        assertEquals(2000, context.get("repeated"));
+
+        context.define("count", 10_000);
+        assertFalse(context.execute(REPEAT, Budget.UNLIMITED.withMaxStringBytes(10_000)));
+        assertEquals("Execution exceeded its string quota.", context.getLastError());
+    }
+
+    @Test
+    void testCallDepthLimit() {
+        context.define("count", 50);
+        assertTrue(context.execute(DEEP, Budget.UNLIMITED.withMaxDepth(100)));
+        assertEquals(50, context.get("reached"));
+
+        context.define("count", 500);
+        assertFalse(context.execute(DEEP, Budget.UNLIMITED.withMaxDepth(100)));
+        assertEquals("Execution exceeded its call depth limit.", context.getLastError());
+
+        //Depth is counted again from the top on the next execution
+        context.define("count", 99);
+        assertTrue(context.execute(DEEP, Budget.UNLIMITED.withMaxDepth(100)));
+    }
+
+    @Test
+    void testRunningOutOfStackIsARuntimeError() {
+        context.define("count", 10_000_000);
+        assertFalse(context.execute(DEEP));
+        assertEquals("Execution ran out of stack.", context.getLastError());
+
+        context.define("count", 10);
+        assertTrue(context.execute(DEEP));
+        assertEquals(10, context.get("reached"));
+    }
+
+    @Test
+    void testCsvRowsAndBatchesAreCharged() throws IOException {
+        Path table = Files.createTempFile("budget", ".csv");
+        try {
+            StringBuilder rows = new StringBuilder("name,count\n");
+            for (int i = 0; i < 1000; i++) {
+                rows.append("row").append(i).append(',').append(i).append('\n');
+            }
+            Files.write(table, rows.toString().getBytes(StandardCharsets.UTF_8));
+            context.define("path", table.toString());
+
+            Program rowsRead = Program.compile(
+                    "int read = 0 ;\nfor ( array < string > row : csv ( path ) ) {\n    read = read + 1 ;\n}");
+            assertTrue(context.execute(rowsRead, Budget.UNLIMITED.withMaxArrayElements(5000)));
+            assertEquals(1001, context.get("read"));
+            assertFalse(context.execute(rowsRead, Budget.UNLIMITED.withMaxArrayElements(1000)));
+            assertEquals("Execution exceeded its array element quota.", context.getLastError());
+            assertFalse(context.execute(rowsRead, Budget.UNLIMITED.withMaxStringBytes(1000)));
+            assertEquals("Execution exceeded its string quota.", context.getLastError());
+
+            Program batches = Program.compile(
+                    "int batches = 0 ;\n" +
+                    "for ( array < array > columns : csvColumns ( path , { \"string\" , \"int\" } , 100 ) ) {\n" +
+                    "    batches = batches + 1 ;\n" +
+                    "}");
+            assertTrue(context.execute(batches, Budget.UNLIMITED.withMaxArrayElements(5000)));
+            assertEquals(10, context.get("batches"));
+            assertFalse(context.execute(batches, Budget.UNLIMITED.withMaxArrayElements(1000)));
+            assertEquals("Execution exceeded its array element quota.", context.getLastError());
+        } finally {
+            Files.delete(table);
+        }
+    }
+
+    @Test
+    void testParsedJsonIsCharged() {
+        StringBuilder numbers = new StringBuilder("[0");
+        for (int i = 1; i < 200_000; i++) {
+            numbers.append(',').append(i);
+        }
+        context.define("json", numbers.append(']').toString());
+        Program parse = Program.compile("array < int > parsed = parseJson ( json ) ;");
+
+        assertFalse(context.execute(parse, Budget.UNLIMITED.withMaxArrayElements(10)));
+        assertEquals("Execution exceeded its array element quota.", context.getLastError());
+        assertTrue(context.execute(parse, Budget.UNLIMITED.withMaxArrayElements(200_000)));
+
+        context.define("json", "{ \"name\" : \"" + "x".repeat(1000) + "\" }");
+        Program object = Program.compile("object parsed = parseJson ( json ) ;");
+        assertFalse(context.execute(object, Budget.UNLIMITED.withMaxStringBytes(1000)));
+        assertEquals("Execution exceeded its string quota.", context.getLastError());
+        assertTrue(context.execute(object, Budget.UNLIMITED.withMaxStringBytes(4000)));
+    }
+
+    @Test
+    void testBudgetOnlyLastsOneExecution() {
+        assertFalse(context.execute(FOREVER, Budget.UNLIMITED.withMaxSteps(10_000)));
+
+        context.define("count", 20_000);
+        assertTrue(context.execute(GROW));
+        assertEquals(20_000, context.get("grown"));
+    }
+
+    @Test
+    void testLimitsMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> Budget.UNLIMITED.withMaxDepth(0));
+        assertThrows(IllegalArgumentException.class, () -> Budget.UNLIMITED.withMaxSteps(-1));
+        assertThrows(IllegalArgumentException.class, () -> Budget.UNLIMITED.withTimeout(Duration.ZERO));
+    }
+}
@@ -0,0 +1,154 @@
+import org.aguerra.cookedham.interpret.run.ExecutionContext;
+import org.aguerra.cookedham.interpret.run.Program;
+import org.aguerra.cookedham.interpret.run.ProgramCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTest {
+    //Touches most kinds of statements and expressions, so a cached copy has to keep all of them
+    private static final String SCRIPT =
+            "int counter = 0 ;\n" +
+            "decimal half = 0.5 ;\n" +
+            "boolean flag = true ;\n" +
+            "array < int > values = { 3 , 1 , 4 , 1 , 5 } ;\n" +
+            "int bump ( int by ) {\n" +
+            "    counter = counter + by ;\n" +
+            "    return counter ;\n" +
+            "}\n" +
+            "for ( int i = 0 ; i < 3 ; i = i + 1 ) {\n" +
+            "    bump ( i ) ;\n" +
+            "}\n" +
+            "for ( int v : values ) {\n" +
+            "    if ( v > 2 && flag ) {\n" +
+            "        bump ( v ) ;\n" +
+            "    } else {\n" +
+            "        bump ( 0 - v ) ;\n" +
+            "    }\n" +
+            "}\n" +
+            "while ( counter > 10 ) {\n" +
+            "    counter = counter - 3 ;\n" +
+            "}\n" +
+            "print counter ;\n" +
+            "print half * 3 ;\n" +
+            "print ! flag ;\n" +
+            "print values [ 2 ] ;\n" +
+            "print len ( values ) ;\n";
+
+    private Path directory;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("cache");
+    }
+
+    @AfterEach
+    void clean() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void testCachedProgramRunsLikeCompiledOne() throws IOException {
+        File script = write("script.ch", SCRIPT);
+        File cached = directory.resolve("script" + ProgramCache.EXTENSION).toFile();
+        assertFalse(cached.exists());
+
+        String compiled = run(ProgramCache.load(script));
+        assertTrue(cached.exists());
+        assertEquals(Program.hash(SCRIPT), header(cached));
+
+        String loaded = run(ProgramCache.load(script));
+        assertEquals(run(Program.compile(SCRIPT)), compiled);
+        assertEquals(compiled, loaded);
+        assertEquals(script.getPath(), ProgramCache.load(script).getPath());
+    }
+
+    @Test
+    void testHitRunsWhatTheCacheHolds() throws IOException {
+        File script = write("script.ch", "print 1 ;");
+        File other = write("other.ch", "print 2 ;");
+        ProgramCache.load(other);
+
+        //The cache for other.ch, labelled with the hash of script.ch, is taken as script.ch's program
+        byte[] body = body(directory.resolve("other" + ProgramCache.EXTENSION).toFile());
+        File cached = directory.resolve("script" + ProgramCache.EXTENSION).toFile();
+        writeCache(cached, Program.hash("print 1 ;"), body);
+
+        assertEquals("2\n", run(ProgramCache.load(script)));
+    }
+
+    @Test
+    void testStaleHashIsCompiledAgain() throws IOException {
+        File script = write("script.ch", "print 1 ;");
+        File cached = directory.resolve("script" + ProgramCache.EXTENSION).toFile();
+        assertEquals("1\n", run(ProgramCache.load(script)));
+
+        write("script.ch", "print 2 ;");
+        assertEquals("2\n", run(ProgramCache.load(script)));
+        assertEquals(Program.hash("print 2 ;"), header(cached));
+    }
+
+    @Test
+    void testCorruptCacheIsCompiledAgain() throws IOException {
+        File script = write("script.ch", "print 3 ;");
+        File cached = directory.resolve("script" + ProgramCache.EXTENSION).toFile();
+        writeCache(cached, Program.hash("print 3 ;"), new byte[]{ 1, 2, 3 });
+
+        assertEquals("3\n", run(ProgramCache.load(script)));
+        assertEquals("3\n", run(ProgramCache.load(script)));
+        assertTrue(cached.length() > 3 + Program.hash("print 3 ;").length());
+    }
+
+    private File write(String name, String source) throws IOException {
+        Path file = directory.resolve(name);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static String run(Program program) {
+        StringWriter out = new StringWriter();
+        ExecutionContext context = new ExecutionContext(out, new StringWriter());
+        assertTrue(context.execute(program));
+        return out.toString();
+    }
+
+    private static String header(File cached) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cached.toPath())))) {
+            return in.readUTF();
+        }
+    }
+
+    //Cache file without its hash
+    private static byte[] body(File cached) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cached.toPath())))) {
+            in.readUTF();
+            return in.readAllBytes();
+        }
+    }
+
+    private static void writeCache(File cached, String hash, byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(hash);
+            out.write(body);
+        }
+        Files.write(cached.toPath(), bytes.toByteArray());
+    }
+}
@@ -0,0 +1,101 @@
+import org.aguerra.cookedham.interpret.run.CompileError;
+import org.aguerra.cookedham.interpret.run.ExecutionContext;
+import org.aguerra.cookedham.interpret.run.Program;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddingTest {
+    private static final String COUNTER =
+            "int calls = 0 ;\n" +
+            "int score ( string name , int base ) {\n" +
+            "    calls = calls + 1 ;\n" +
+            "    return base + len ( name ) ;\n" +
+            "}\n" +
+            "for ( int i = 0 ; i < 2000 ; i = i + 1 ) {\n" +
+            "    print prefix + i ;\n" +
+            "    score ( prefix , i ) ;\n" +
+            "}\n";
+
+    @Test
+    void testCallAndGlobals() throws CompileError {
+        StringWriter out = new StringWriter();
+        ExecutionContext context = new ExecutionContext(out, new StringWriter());
+        context.define("prefix", "a");
+
+        assertTrue(context.execute(Program.compile(COUNTER)));
+        assertTrue(context.isFunction("score"));
+        assertFalse(context.isFunction("calls"));
+        assertEquals(13, context.call("score", "ada", 10));
+        assertEquals(2001, context.get("calls"));
+        assertTrue(out.toString().startsWith("a0\na1\n"));
+    }
+
+    @Test
+    void testContextsRunAtOnceInIsolation() throws Exception {
+        Program program = Program.compile(COUNTER);
+        CyclicBarrier start = new CyclicBarrier(2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> left = pool.submit(() -> run(program, "left", start));
+            Future<String> right = pool.submit(() -> run(program, "right", start));
+
+            assertOnly("left", left.get());
+            assertOnly("right", right.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRuntimeErrorStaysInItsContext() throws CompileError {
+        StringWriter err = new StringWriter();
+        ExecutionContext failing = new ExecutionContext(new StringWriter(), err);
+        ExecutionContext working = new ExecutionContext(new StringWriter(), new StringWriter());
+
+        assertFalse(failing.execute(Program.compile("array < int > a = { 1 } ;\nprint a [ 5 ] ;")));
+        assertNotNull(failing.getLastError());
+        assertFalse(err.toString().isEmpty());
+
+        assertTrue(working.execute(Program.compile("int x = 1 ;")));
+        assertFalse(working.hadRuntimeError());
+        assertNull(working.getLastError());
+        assertNull(working.get("prefix"));
+    }
+
+    @Test
+    void testResetDropsGlobals() throws CompileError {
+        ExecutionContext context = new ExecutionContext(new StringWriter(), new StringWriter());
+        context.execute(Program.compile("int kept = 5 ;"));
+        assertEquals(5, context.get("kept"));
+
+        context.reset();
+        assertNull(context.get("kept"));
+    }
+
+    private static String run(Program program, String prefix, CyclicBarrier start) throws Exception {
+        StringWriter out = new StringWriter();
+        ExecutionContext context = new ExecutionContext(out, new StringWriter());
+        context.define("prefix", prefix);
+        start.await();
+
+        assertTrue(context.execute(program));
+        assertEquals(2000, context.get("calls"));
+        assertEquals(prefix, context.get("prefix"));
+        return out.toString();
+    }
+
+    private static void assertOnly(String prefix, String output) {
+        String[] lines = output.split("\n");
+        assertEquals(2000, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(prefix + i, lines[i]);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineTest {
+    private ScriptEngine engine;
+    private StringWriter out;
+
+    @BeforeEach
+    void init() {
+        engine = new ScriptEngineManager().getEngineByName("cookedham");
+        assertNotNull(engine);
+        out = new StringWriter();
+        engine.getContext().setWriter(out);
+        engine.getContext().setErrorWriter(new StringWriter());
+    }
+
+    @Test
+    void testEvalReturnsLastExpression() throws ScriptException {
+        assertEquals(7, engine.eval("int x = 3 ;\nx + 4 ;"));
+        assertNull(engine.eval("print x ;"));
+        assertEquals("3\n", out.toString());
+    }
+
+    @Test
+    void testBindingRoundTrip() throws ScriptException {
+        engine.put("x", 3);
+        engine.eval("x = 10 ;");
+        assertEquals(10, engine.get("x"));
+
+        engine.eval("print x ;");
+        assertEquals("10\n", out.toString());
+
+        engine.put("x", 4);
+        engine.eval("print x ;");
+        assertEquals("10\n4\n", out.toString());
+    }
+
+    @Test
+    void testEngineScopeWinsOverGlobalScope() throws ScriptException {
+        Bindings global = engine.createBindings();
+        global.put("name", "global");
+        global.put("count", 2L);
+        engine.setBindings(global, ScriptContext.GLOBAL_SCOPE);
+        engine.put("name", "engine");
+
+        engine.eval("print name ;\nprint count ;");
+        assertEquals("engine\n2\n", out.toString());
+        assertEquals("global", global.get("name"));
+        assertEquals(2L, global.get("count"));
+        assertFalse(engine.getBindings(ScriptContext.ENGINE_SCOPE).containsKey("count"));
+    }
+
+    @Test
+    void testCompiledScriptRunsAgainstCurrentBindings() throws ScriptException {
+        CompiledScript script = ((Compilable) engine).compile("total = total + step ;\ntotal ;");
+        engine.put("total", 0);
+        engine.put("step", 5);
+
+        assertEquals(5, script.eval());
+        assertEquals(10, script.eval());
+        assertEquals(10, engine.get("total"));
+        assertSame(engine, script.getEngine());
+    }
+
+    @Test
+    void testInvokeFunction() throws ScriptException, NoSuchMethodException {
+        engine.eval("int fib ( int n ) {\n" +
+                "    if ( n < 2 ) {\n" +
+                "        return n ;\n" +
+                "    }\n" +
+                "    return fib ( n - 1 ) + fib ( n - 2 ) ;\n" +
+                "}\n" +
+                "string greet ( string name ) {\n" +
+                "    return \"hello-\" + name ;\n" +
+                "}\n" +
+                "int sum ( array values ) {\n" +
+                "    int total = 0 ;\n" +
+                "    for ( int v : values ) {\n" +
+                "        total = total + v ;\n" +
+                "    }\n" +
+                "    return total ;\n" +
+                "}");
+
+        Invocable invocable = (Invocable) engine;
+        assertEquals(6765, invocable.invokeFunction("fib", 20));
+        assertEquals(6765, invocable.invokeFunction("fib", 20L));
+        assertEquals("hello-ada", invocable.invokeFunction("greet", "ada"));
+        List<Integer> values = Arrays.asList(1, 2, 3);
+        assertEquals(6, invocable.invokeFunction("sum", values));
+        assertThrows(NoSuchMethodException.class, () -> invocable.invokeFunction("missing"));
+        assertThrows(ScriptException.class, () -> invocable.invokeFunction("fib", 1, 2));
+    }
+
+    @Test
+    void testGetInterface() throws ScriptException {
+        engine.eval("int twice ( int n ) {\n    return n * 2 ;\n}");
+        Doubler doubler = ((Invocable) engine).getInterface(Doubler.class);
+        assertEquals(42, doubler.twice(21));
+    }
+
+    @Test
+    void testErrorsBecomeScriptExceptions() {
+        assertThrows(ScriptException.class, () -> engine.eval("int x = ;"));
+        assertThrows(ScriptException.class, () -> engine.eval("array < int > a = { 1 } ;\nprint a [ 3 ] ;"));
+    }
+
+    @Test
+    void testEnginesKeepSeparateGlobals() throws ScriptException {
+        ScriptEngine other = engine.getFactory().getScriptEngine();
+        other.getContext().setWriter(new StringWriter());
+        other.getContext().setErrorWriter(new StringWriter());
+        engine.eval("int only = 1 ;");
+
+        assertThrows(ScriptException.class, () -> other.eval("print only ;"));
+    }
+
+    public interface Doubler {
+        int twice(int n);
+    }
+}
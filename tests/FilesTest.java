@@ -0,0 +1,67 @@
+import org.aguerra.cookedham.interpret.run.ExecutionContext;
+import org.aguerra.cookedham.interpret.run.Program;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilesTest {
+    private Path file;
+    private ExecutionContext context;
+
+    @BeforeEach
+    void init() throws IOException {
+        file = Files.createTempFile("files", ".txt");
+        context = new ExecutionContext(new StringWriter(), new StringWriter());
+        context.define("path", file.toString());
+    }
+
+    @AfterEach
+    void clean() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testUnclosedFileIsWrittenWhenExecutionEnds() throws IOException {
+        assertTrue(context.execute(Program.compile(
+                "file f = openWrite ( path ) ;\nwriteLine ( f , \"kept\" ) ;\nwrite ( f , \"too\" ) ;")));
+        assertEquals("kept\ntoo", read());
+    }
+
+    @Test
+    void testUnclosedFileIsWrittenWhenExecutionFails() throws IOException {
+        assertFalse(context.execute(Program.compile(
+                "file f = openWrite ( path ) ;\nwriteLine ( f , \"before\" ) ;\narray < int > a = { 1 } ;\nprint a [ 9 ] ;")));
+        assertEquals("before\n", read());
+    }
+
+    @Test
+    void testFileOpenedInACallIsWrittenWhenTheCallEnds() throws IOException {
+        assertTrue(context.execute(Program.compile(
+                "void log ( string line ) {\n    file f = openWrite ( path ) ;\n    writeLine ( f , line ) ;\n}")));
+        context.call("log", "called");
+        assertEquals("called\n", read());
+    }
+
+    @Test
+    void testClosedFileStaysClosed() throws IOException {
+        assertTrue(context.execute(Program.compile(
+                "file f = openWrite ( path ) ;\nwriteLine ( f , \"once\" ) ;\nclose ( f ) ;\nclose ( f ) ;")));
+        assertEquals("once\n", read());
+
+        //Files are closed at the end of the execution that opened them, later ones cannot write to them
+        assertFalse(context.execute(Program.compile("writeLine ( f , \"late\" ) ;")));
+        assertEquals("once\n", read());
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+import org.aguerra.cookedham.interpret.run.OutputSink;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputSinkTest {
+    private static final String LINE = System.lineSeparator();
+
+    @Test
+    void testOnExitWaitsForFlush() {
+        StringWriter target = new StringWriter();
+        OutputSink sink = new OutputSink(target, OutputSink.FlushPolicy.ON_EXIT);
+        sink.println("line");
+        sink.print(-42);
+        assertEquals("", target.toString());
+
+        sink.flush();
+        assertEquals("line" + LINE + "-42", target.toString());
+    }
+
+    @Test
+    void testOnNewlineFlushesEachLine() {
+        StringWriter target = new StringWriter();
+        OutputSink sink = new OutputSink(target, OutputSink.FlushPolicy.ON_NEWLINE);
+        sink.print("partial");
+        assertEquals("", target.toString());
+
+        sink.println(7L);
+        assertEquals("partial7" + LINE, target.toString());
+    }
+
+    @Test
+    void testPeriodicFlushesWithoutAnotherWrite() throws InterruptedException {
+        StringWriter target = new StringWriter();
+        OutputSink sink = new OutputSink(target, OutputSink.FlushPolicy.PERIODIC);
+        sink.println("first");
+        sink.print("no newline");
+        assertEquals("", target.toString());
+
+        //Nothing else is printed, the scheduled flush alone has to deliver the output
+        assertTrue(waitFor(target, "first" + LINE + "no newline"));
+
+        sink.print(12);
+        assertTrue(waitFor(target, "first" + LINE + "no newline12"));
+    }
+
+    @Test
+    void testLargeWritesBypassTheBuffer() {
+        StringWriter target = new StringWriter();
+        OutputSink sink = new OutputSink(target, OutputSink.FlushPolicy.ON_EXIT);
+        String large = "x".repeat(1 << 17);
+        sink.print("head");
+        sink.print(large);
+        assertEquals("head" + large, target.toString());
+        assertFalse(sink.checkError());
+    }
+
+    private static boolean waitFor(StringWriter target, String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            synchronized (target.getBuffer()) {
+                if (target.toString().equals(expected)) return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,61 @@
+import org.aguerra.cookedham.interpret.run.CookedHam;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Runs every script in test resources that has a .out file the way jham does, from inside that
+//directory so the files the scripts name are found, and compares standard output and error with it.
+//Scripts with a .in file are run as filters over it.
+class ScriptsTest {
+    private static final File RESOURCES = new File("test resources");
+
+    @Test
+    void testScriptsMatchExpectedOutput() throws Exception {
+        File[] expected = RESOURCES.listFiles((directory, name) -> name.endsWith(".out"));
+        assertNotNull(expected);
+        assertTrue(expected.length > 0);
+
+        List<String> failures = new ArrayList<>();
+        for (File out : expected) {
+            String name = out.getName().substring(0, out.getName().length() - ".out".length());
+            String actual = run(name);
+            String wanted = new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8);
+            if (!wanted.equals(actual)) failures.add(name + ".ch printed:\n" + actual);
+        }
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    private static String run(String name) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        File input = new File(RESOURCES, name + ".in");
+
+        List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+                CookedHam.class.getName()));
+        if (input.exists()) command.add("filter");
+        command.add(name + ".ch");
+
+        ProcessBuilder builder = new ProcessBuilder(command).directory(RESOURCES).redirectErrorStream(true);
+        if (input.exists()) builder.redirectInput(input);
+        Process process = builder.start();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream stream = process.getInputStream()) {
+            stream.transferTo(output);
+        }
+        if (!process.waitFor(2, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            fail(name + ".ch did not finish.");
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
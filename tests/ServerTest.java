@@ -0,0 +1,198 @@
+import org.aguerra.cookedham.interpret.run.Budget;
+import org.aguerra.cookedham.interpret.run.ScriptServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//Round trips requests through a server listening on a loopback port
+class ServerTest {
+    private static final int MAX_STRING = 1 << 16;
+
+    private ServerSocketChannel server;
+    private SocketChannel socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    @BeforeEach
+    void init() throws IOException {
+        server = ScriptServer.open("0");
+        ScriptServer scripts = new ScriptServer(2, Budget.UNLIMITED.withMaxSteps(1_000_000), MAX_STRING);
+        Thread serving = new Thread(() -> {
+            try {
+                scripts.serve(server);
+            } catch (IOException e) {
+                //Closing the server socket ends the test
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+
+        socket = SocketChannel.open(server.getLocalAddress());
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(socket)));
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(socket)));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        socket.close();
+        server.close();
+    }
+
+    @Test
+    void testRunStreamsOutput() throws IOException {
+        send(ScriptServer.RUN, "print args [ 0 ] ;\nprint len ( args ) ;", "first", "second");
+        Response response = receive();
+
+        assertEquals(0, response.exit);
+        assertEquals("first\n2\n", response.out);
+        assertEquals("", response.err);
+        assertNotNull(response.id);
+    }
+
+    @Test
+    void testCompileThenExec() throws IOException {
+        send(ScriptServer.COMPILE, "print args [ 0 ] + args [ 1 ] ;");
+        Response compiled = receive();
+        assertEquals(0, compiled.exit);
+        assertNotNull(compiled.id);
+        assertEquals("", compiled.out);
+
+        send(ScriptServer.EXEC, compiled.id, "ham", "burger");
+        assertEquals("hamburger\n", receive().out);
+        send(ScriptServer.EXEC, compiled.id, "cooked", "ham");
+        assertEquals("cookedham\n", receive().out);
+
+        send(ScriptServer.EXEC, "missing");
+        Response unknown = receive();
+        assertEquals(66, unknown.exit);
+        assertTrue(unknown.err.contains("Unknown program id 'missing'."));
+    }
+
+    @Test
+    void testErrorsAnswerWithExitCodes() throws IOException {
+        send(ScriptServer.RUN, "int x = ;");
+        Response compileError = receive();
+        assertEquals(65, compileError.exit);
+        assertFalse(compileError.err.isEmpty());
+
+        send(ScriptServer.RUN, "array < int > a = { 1 } ;\nprint a [ 2 ] ;");
+        Response runtimeError = receive();
+        assertEquals(70, runtimeError.exit);
+        assertFalse(runtimeError.err.isEmpty());
+
+        //The budget stops a runaway script without losing the connection
+        send(ScriptServer.RUN, "while ( true ) {\n}");
+        assertEquals(70, receive().exit);
+        send(ScriptServer.RUN, "print 1 ;");
+        assertEquals("1\n", receive().out);
+    }
+
+    @Test
+    void testRequestsDoNotShareGlobals() throws IOException {
+        send(ScriptServer.RUN, "int leaked = 1 ;");
+        assertEquals(0, receive().exit);
+
+        send(ScriptServer.RUN, "print leaked ;");
+        Response response = receive();
+        assertEquals(70, response.exit);
+        assertTrue(response.err.contains("leaked"));
+    }
+
+    @Test
+    void testOversizedStringClosesConnection() throws IOException {
+        out.writeByte(ScriptServer.RUN);
+        out.writeInt(MAX_STRING + 1);
+        out.flush();
+
+        Response response = receive();
+        assertEquals(64, response.exit);
+        assertTrue(response.err.contains("outside 0 to " + MAX_STRING));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void testConnectionsAreServedAtOnce() throws IOException {
+        try (SocketChannel second = SocketChannel.open((InetSocketAddress) server.getLocalAddress())) {
+            DataInputStream secondIn = new DataInputStream(Channels.newInputStream(second));
+            DataOutputStream secondOut = new DataOutputStream(Channels.newOutputStream(second));
+
+            send(ScriptServer.RUN, "print 1 ;");
+            send(secondOut, ScriptServer.RUN, "print 2 ;");
+            assertEquals("2\n", receive(secondIn).out);
+            assertEquals("1\n", receive().out);
+        }
+    }
+
+    private void send(byte kind, String text, String... arguments) throws IOException {
+        send(out, kind, text, arguments);
+    }
+
+    private static void send(DataOutputStream out, byte kind, String text, String... arguments) throws IOException {
+        out.writeByte(kind);
+        writeString(out, text);
+        out.writeInt(arguments.length);
+        for (String argument : arguments) {
+            writeString(out, argument);
+        }
+        out.flush();
+    }
+
+    private Response receive() throws IOException {
+        return receive(in);
+    }
+
+    private static Response receive(DataInputStream in) throws IOException {
+        Response response = new Response();
+        StringBuilder output = new StringBuilder();
+        StringBuilder error = new StringBuilder();
+        for (;;) {
+            int kind = in.read();
+            if (kind == -1) throw new EOFException("Connection closed before EXIT.");
+            if (kind == ScriptServer.EXIT) {
+                response.exit = in.readInt();
+                response.out = output.toString();
+                response.err = error.toString();
+                return response;
+            }
+
+            String text = readString(in);
+            if (kind == ScriptServer.OUT) output.append(text);
+            else if (kind == ScriptServer.ERR) error.append(text);
+            else if (kind == ScriptServer.ID) response.id = text;
+            else fail("Unknown frame kind " + kind);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Response {
+        int exit;
+        String id;
+        String out;
+        String err;
+    }
+}
@@ -0,0 +1,73 @@
+import org.aguerra.cookedham.interpret.run.ExecutionContext;
+import org.aguerra.cookedham.interpret.run.Program;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+    private Path directory;
+    private File image;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        image = directory.resolve("image.chs").toFile();
+        Files.write(directory.resolve("lib.ch"), List.of("print \"loaded\" ;", "int pi = 3 ;"), StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void clean() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void testFunctionsAndDataSurvive() throws IOException {
+        ExecutionContext saved = new ExecutionContext(new StringWriter(), new StringWriter());
+        assertTrue(saved.execute(Program.compile(
+                "int sq ( int x ) {\n    return x * x ;\n}\n" +
+                "array < int > table = { 1 , 2 , 3 } ;\n" +
+                "string name = \"lib\" ;")));
+        saved.saveSnapshot(image);
+
+        StringWriter out = new StringWriter();
+        ExecutionContext restored = new ExecutionContext(out, new StringWriter());
+        restored.restoreSnapshot(image);
+        assertEquals(81, restored.call("sq", 9));
+        assertEquals(List.of(1, 2, 3), restored.get("table"));
+        assertEquals("lib", restored.get("name"));
+    }
+
+    @Test
+    void testRestoredModuleIsNotLoadedAgain() throws IOException {
+        String lib = directory.resolve("lib.ch").toAbsolutePath().toString();
+        StringWriter savedOut = new StringWriter();
+        ExecutionContext saved = new ExecutionContext(savedOut, new StringWriter());
+        assertTrue(saved.execute(Program.compile("import \"" + lib + "\" as lib ;")));
+        saved.saveSnapshot(image);
+        assertEquals("", savedOut.toString());
+
+        StringWriter out = new StringWriter();
+        ExecutionContext restored = new ExecutionContext(out, new StringWriter());
+        restored.restoreSnapshot(image);
+        assertTrue(restored.execute(Program.compile("print lib . pi ;")));
+        assertEquals("loaded\n3\n", out.toString());
+
+        //Importing the file again finds the restored module already loaded
+        assertTrue(restored.execute(Program.compile("import \"" + lib + "\" as again ;\nprint again . pi ;")));
+        assertEquals("loaded\n3\n3\n", out.toString());
+    }
+}